@@ -5,6 +5,7 @@ package org.terasology.gooeyDefence;
 import org.joml.Vector3i;
 import org.joml.Vector3ic;
 import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.prefab.Prefab;
 import org.terasology.engine.registry.CoreRegistry;
 import org.terasology.engine.world.BlockEntityRegistry;
 import org.terasology.gestalt.entitysystem.component.Component;
@@ -12,7 +13,9 @@ import org.terasology.gooeyDefence.components.FieldConfigComponent;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -41,6 +44,47 @@ public final class DefenceField {
      * Given in blocks.
      */
     public static int entranceRingSize;
+    /**
+     * How often moving entities have their location saved, and so sent over the network.
+     * Movement is still simulated every frame. Zero, the default, saves every frame.
+     * Given in seconds.
+     */
+    public static float movementSyncInterval;
+    /**
+     * If enemy movement should be split across multiple threads.
+     * Only the movement itself is run in parallel, events are still sent on the main thread.
+     */
+    public static boolean parallelMovement;
+    /**
+     * The shortest time between two full path searches from the same entrance.
+     * Requests made in between are coalesced into a single search.
+     * Given in seconds.
+     */
+    public static float pathRecalculateInterval;
+    /**
+     * If every hit on an entity should send it's own damage event, rather than being summed over the tick.
+     * Intended for debugging listeners that need to see each individual hit.
+     */
+    public static boolean perHitDamageEvents;
+    /**
+     * The most burning enemies that can spread their fire each time fire spreads.
+     * Any left over spread the next time. Zero or less lets every burning enemy spread.
+     */
+    public static int fireSpreadBudget;
+    /**
+     * The seed used for the chance of fire spreading, so that the same wave burns the same way.
+     * The random generator is re-seeded each time the field is activated.
+     */
+    public static long fireSpreadSeed;
+    /**
+     * The most bullet entities that can exist at once.
+     * Once reached, plain bullets are drawn as tracers without an entity.
+     */
+    public static int bulletPoolCap;
+    /**
+     * How many bullet entities to create when the field is activated, ready for the first shots.
+     */
+    public static int bulletPoolPrewarm;
 
     /**
      * A boolean that controls if the field is active or not.
@@ -74,6 +118,13 @@ public final class DefenceField {
      * It is set to the block entity of a block in the shrine.
      */
     private static EntityRef shrineEntity = EntityRef.NULL;
+    /**
+     * The concrete component class last found extending each superclass, for entities of each prefab.
+     * Used to turn most component lookups by superclass into a single {@link EntityRef#getComponent(Class)}.
+     *
+     * @see #getComponentExtending(EntityRef, Class)
+     */
+    private static final Map<Prefab, Map<Class<?>, Class<? extends Component>>> componentCache = new HashMap<>();
 
     /**
      * Private constructor as class is a utility class and should not be instantiated.
@@ -86,9 +137,18 @@ public final class DefenceField {
         shrineRingSize = config.shrineRingSize;
         outerRingSize = config.outerRingSize;
         entranceRingSize = config.entranceRingSize;
+        movementSyncInterval = config.movementSyncInterval;
+        parallelMovement = config.parallelMovement;
+        pathRecalculateInterval = config.pathRecalculateInterval;
+        perHitDamageEvents = config.perHitDamageEvents;
+        fireSpreadBudget = config.fireSpreadBudget;
+        fireSpreadSeed = config.fireSpreadSeed;
+        bulletPoolCap = config.bulletPoolCap;
+        bulletPoolPrewarm = config.bulletPoolPrewarm;
 
         entrances = calculateEntrances(entranceCount);
         shrineData = convertToVectors(config.shrineData);
+        componentCache.clear();
     }
 
     /**
@@ -174,6 +234,9 @@ public final class DefenceField {
 
     /**
      * Helper method for getting a component given one of its superclasses
+     * <p>
+     * Entities of the same prefab almost always have the same concrete component, so the class found is cached
+     * and checked first next time.
      *
      * @param entity     The entity to search on
      * @param superClass The superclass of the component to filter for
@@ -184,12 +247,11 @@ public final class DefenceField {
         if (!entity.exists()) {
             throw new IllegalArgumentException("Component extending " + superClass.getSimpleName() + " requested from a null entity");
         }
-        for (Component component : entity.iterateComponents()) {
-            if (superClass.isInstance(component)) {
-                return superClass.cast(component);
-            }
+        Y component = findComponentExtending(entity, superClass);
+        if (component == null) {
+            throw new IllegalArgumentException("Entity didn't have any component extending " + superClass.getSimpleName());
         }
-        throw new IllegalArgumentException("Entity didn't have any component extending " + superClass.getSimpleName());
+        return component;
     }
 
     /**
@@ -204,11 +266,34 @@ public final class DefenceField {
         if (!entity.exists()) {
             return false;
         }
+        return findComponentExtending(entity, superClass) != null;
+    }
+
+    /**
+     * Finds a component extending the given class, using the cached class for the entity's prefab if possible.
+     * If the cached class isn't on the entity, all the components are searched and the cache is updated.
+     *
+     * @param entity     The entity to search on
+     * @param superClass The superclass of the component to filter for
+     * @param <Y>        The type of the superclass
+     * @return The component that extends the superclass, or null if there is none
+     */
+    private static <Y> Y findComponentExtending(EntityRef entity, Class<Y> superClass) {
+        Map<Class<?>, Class<? extends Component>> prefabCache =
+                componentCache.computeIfAbsent(entity.getParentPrefab(), prefab -> new HashMap<>());
+        Class<? extends Component> cachedClass = prefabCache.get(superClass);
+        if (cachedClass != null) {
+            Component component = entity.getComponent(cachedClass);
+            if (component != null) {
+                return superClass.cast(component);
+            }
+        }
         for (Component component : entity.iterateComponents()) {
             if (superClass.isInstance(component)) {
-                return true;
+                prefabCache.put(superClass, component.getClass());
+                return superClass.cast(component);
             }
         }
-        return false;
+        return null;
     }
 }
@@ -34,6 +34,7 @@ public final class DefenceUris {
 
     public static final String SPHERE = "GooeyDefence:Sphere";
     public static final String BULLET = "GooeyDefence:Bullet";
+    public static final String BULLET_PARTICLE = "GooeyDefence:BulletParticle";
 
     public static final String DEFENCE_HUD = "GooeyDefence:DefenceHud";
     public static final String CONTROL_SCREEN = "GooeyDefence:ControlScreen";
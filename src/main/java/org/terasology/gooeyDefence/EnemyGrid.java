@@ -0,0 +1,350 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.gooeyDefence;
+
+import org.joml.Vector3fc;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * A uniform grid of buckets over the horizontal plane of the defence field.
+ * <p>
+ * Each enemy is stored by it's slot in the {@link EnemyStateStore}, in the bucket that contains it's position.
+ * Range queries then only need to check the enemies in buckets overlapping the query,
+ * rather than every enemy on the field.
+ * Positions outside of the grid are clamped into the edge buckets so no enemy is ever lost.
+ *
+ * @see EnemyManager
+ * @see EnemyStateStore
+ */
+public final class EnemyGrid {
+    /**
+     * The size of each bucket along the x and z axis.
+     * Given in blocks
+     */
+    public static final float CELL_SIZE = 4;
+    private static final int INITIAL_CELL_CAPACITY = 4;
+
+    private final EnemyStateStore store;
+    /**
+     * The slots in each bucket. Only the first {@link #cellSizes} entries of each are in use.
+     */
+    private final int[][] cellSlots;
+    private final int[] cellSizes;
+    /**
+     * The modification count at which each bucket last gained or lost an enemy.
+     */
+    private final long[] cellStamps;
+    private long modificationCount;
+    private final int cellsPerSide;
+    private final float originX;
+    private final float originZ;
+    /**
+     * The bucket each slot is currently stored in.
+     */
+    private int[] slotCells = new int[64];
+
+    /**
+     * Creates a grid covering a square area centred on the field centre.
+     *
+     * @param store      The store holding the positions of the enemies
+     * @param halfExtent How far the grid should extend from the centre in each direction. Given in blocks.
+     */
+    public EnemyGrid(EnemyStateStore store, int halfExtent) {
+        this.store = store;
+        originX = DefenceField.FIELD_CENTRE.x() - halfExtent;
+        originZ = DefenceField.FIELD_CENTRE.z() - halfExtent;
+        cellsPerSide = Math.max(1, (int) Math.ceil(halfExtent * 2 / CELL_SIZE) + 1);
+        cellSlots = new int[cellsPerSide * cellsPerSide][INITIAL_CELL_CAPACITY];
+        cellSizes = new int[cellsPerSide * cellsPerSide];
+        cellStamps = new long[cellsPerSide * cellsPerSide];
+    }
+
+    /**
+     * Start tracking an enemy, at the position it has in the store.
+     *
+     * @param slot The slot of the enemy to add
+     */
+    public void add(int slot) {
+        if (slot >= slotCells.length) {
+            slotCells = Arrays.copyOf(slotCells, Math.max(slot + 1, slotCells.length * 2));
+        }
+        int cell = cellIndex(store.getPositionX(slot), store.getPositionZ(slot));
+        addToCell(cell, slot);
+        slotCells[slot] = cell;
+    }
+
+    /**
+     * Moves an enemy between buckets if it's position in the store has left it's current bucket.
+     *
+     * @param slot The slot of the enemy that moved
+     */
+    public void update(int slot) {
+        int newCell = cellIndex(store.getPositionX(slot), store.getPositionZ(slot));
+        if (newCell != slotCells[slot]) {
+            removeFromCell(slotCells[slot], slot);
+            addToCell(newCell, slot);
+            slotCells[slot] = newCell;
+        }
+    }
+
+    /**
+     * Stop tracking an enemy.
+     *
+     * @param slot The slot of the enemy to remove
+     */
+    public void remove(int slot) {
+        removeFromCell(slotCells[slot], slot);
+    }
+
+    /**
+     * Updates the grid after the store has moved an enemy into a different slot.
+     *
+     * @param from The slot the enemy used to be in
+     * @param to   The slot the enemy is now in
+     * @see EnemyStateStore#remove(int)
+     */
+    public void renumber(int from, int to) {
+        int cell = slotCells[from];
+        int[] slots = cellSlots[cell];
+        for (int i = 0; i < cellSizes[cell]; i++) {
+            if (slots[i] == from) {
+                slots[i] = to;
+                break;
+            }
+        }
+        slotCells[to] = cell;
+    }
+
+    /**
+     * Removes all enemies from the grid.
+     */
+    public void clear() {
+        Arrays.fill(cellSizes, 0);
+        Arrays.fill(cellStamps, ++modificationCount);
+    }
+
+    /**
+     * Gets a stamp for the buckets overlapping a range.
+     * The stamp only changes when an enemy enters or leaves one of the buckets, so if two stamps for the same
+     * range are equal, the same enemies are still in those buckets.
+     * Enemies moving within their bucket do not change the stamp.
+     *
+     * @param pos   The centre of the range
+     * @param range The radius of the range
+     * @return The stamp for the buckets in the range
+     */
+    public long getStamp(Vector3fc pos, float range) {
+        int minX = cellCoordinate(pos.x() - range, originX);
+        int maxX = cellCoordinate(pos.x() + range, originX);
+        int minZ = cellCoordinate(pos.z() - range, originZ);
+        int maxZ = cellCoordinate(pos.z() + range, originZ);
+        long stamp = 0;
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                stamp = Math.max(stamp, cellStamps[x * cellsPerSide + z]);
+            }
+        }
+        return stamp;
+    }
+
+    /**
+     * Adds all the enemies within the ring around the position to the given collection.
+     * Only the buckets overlapping the outer range are checked.
+     * <p>
+     * An enemy is within the ring if it's distance is more than the minimum range and no more than the maximum range.
+     * Enemies that are already dying are left out.
+     *
+     * @param pos      The centre of the search
+     * @param minRange The inner radius of the ring. Zero to include every enemy within the maximum range.
+     * @param maxRange The outer radius of the ring
+     * @param result   The collection to add the enemies found to
+     * @see EnemyStateStore#STATUS_DYING
+     */
+    public void addEnemiesInRange(Vector3fc pos, float minRange, float maxRange, Collection<EntityRef> result) {
+        float minRangeSqr = minRange > 0 ? minRange * minRange : -1;
+        float maxRangeSqr = maxRange * maxRange;
+        int minX = cellCoordinate(pos.x() - maxRange, originX);
+        int maxX = cellCoordinate(pos.x() + maxRange, originX);
+        int minZ = cellCoordinate(pos.z() - maxRange, originZ);
+        int maxZ = cellCoordinate(pos.z() + maxRange, originZ);
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                int cell = x * cellsPerSide + z;
+                int[] slots = cellSlots[cell];
+                for (int i = 0; i < cellSizes[cell]; i++) {
+                    if (store.hasStatus(slots[i], EnemyStateStore.STATUS_DYING)) {
+                        continue;
+                    }
+                    float distanceSqr = store.distanceSquared(slots[i], pos);
+                    if (distanceSqr <= maxRangeSqr && distanceSqr > minRangeSqr) {
+                        result.add(store.getEntity(slots[i]));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds every enemy in the buckets overlapping a range to the given collection, without checking their distance.
+     * This is a superset of the enemies in the range, which stays the same for as long as
+     * {@link #getStamp(Vector3fc, float)} does.
+     *
+     * @param pos    The centre of the range
+     * @param range  The radius of the range
+     * @param result The collection to add the enemies found to
+     */
+    public void addEnemiesInCells(Vector3fc pos, float range, Collection<EntityRef> result) {
+        int minX = cellCoordinate(pos.x() - range, originX);
+        int maxX = cellCoordinate(pos.x() + range, originX);
+        int minZ = cellCoordinate(pos.z() - range, originZ);
+        int maxZ = cellCoordinate(pos.z() + range, originZ);
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                int cell = x * cellsPerSide + z;
+                int[] slots = cellSlots[cell];
+                for (int i = 0; i < cellSizes[cell]; i++) {
+                    result.add(store.getEntity(slots[i]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Calls the consumer with every enemy within the ring around the position.
+     * Only the buckets overlapping the outer range are checked.
+     * Enemies that are already dying are left out.
+     * <p>
+     * The consumer must not add or remove enemies from the grid.
+     *
+     * @param pos      The centre of the search
+     * @param minRange The inner radius of the ring. Zero to include every enemy within the maximum range.
+     * @param maxRange The outer radius of the ring
+     * @param consumer The consumer to call with each enemy found
+     * @see #addEnemiesInRange(Vector3fc, float, float, Collection)
+     */
+    public void forEachEnemyInRange(Vector3fc pos, float minRange, float maxRange, Consumer<EntityRef> consumer) {
+        float minRangeSqr = minRange > 0 ? minRange * minRange : -1;
+        float maxRangeSqr = maxRange * maxRange;
+        int minX = cellCoordinate(pos.x() - maxRange, originX);
+        int maxX = cellCoordinate(pos.x() + maxRange, originX);
+        int minZ = cellCoordinate(pos.z() - maxRange, originZ);
+        int maxZ = cellCoordinate(pos.z() + maxRange, originZ);
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                int cell = x * cellsPerSide + z;
+                int[] slots = cellSlots[cell];
+                for (int i = 0; i < cellSizes[cell]; i++) {
+                    if (store.hasStatus(slots[i], EnemyStateStore.STATUS_DYING)) {
+                        continue;
+                    }
+                    float distanceSqr = store.distanceSquared(slots[i], pos);
+                    if (distanceSqr <= maxRangeSqr && distanceSqr > minRangeSqr) {
+                        consumer.accept(store.getEntity(slots[i]));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the enemy closest to the shrine within the ring around the position.
+     * Only the buckets overlapping the outer range are checked.
+     * <p>
+     * Ties are broken by the lowest slot, so the result is the same for the same enemies.
+     * Enemies that are already dying are left out.
+     *
+     * @param pos      The centre of the search
+     * @param minRange The inner radius of the ring. Zero to include every enemy within the maximum range.
+     * @param maxRange The outer radius of the ring
+     * @return The slot of the enemy with the fewest remaining steps, or -1 if there are no enemies in the ring
+     * @see EnemyStateStore#getRemainingSteps(int)
+     */
+    public int findMostAdvanced(Vector3fc pos, float minRange, float maxRange) {
+        float minRangeSqr = minRange > 0 ? minRange * minRange : -1;
+        float maxRangeSqr = maxRange * maxRange;
+        int minX = cellCoordinate(pos.x() - maxRange, originX);
+        int maxX = cellCoordinate(pos.x() + maxRange, originX);
+        int minZ = cellCoordinate(pos.z() - maxRange, originZ);
+        int maxZ = cellCoordinate(pos.z() + maxRange, originZ);
+        int best = -1;
+        int bestSteps = Integer.MAX_VALUE;
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                int cell = x * cellsPerSide + z;
+                int[] slots = cellSlots[cell];
+                for (int i = 0; i < cellSizes[cell]; i++) {
+                    int slot = slots[i];
+                    int steps = store.getRemainingSteps(slot);
+                    if (steps > bestSteps || (steps == bestSteps && slot > best)
+                            || store.hasStatus(slot, EnemyStateStore.STATUS_DYING)) {
+                        continue;
+                    }
+                    float distanceSqr = store.distanceSquared(slot, pos);
+                    if (distanceSqr <= maxRangeSqr && distanceSqr > minRangeSqr) {
+                        best = slot;
+                        bestSteps = steps;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Appends a slot to a bucket, growing the bucket if needed.
+     *
+     * @param cell The bucket to add to
+     * @param slot The slot to add
+     */
+    private void addToCell(int cell, int slot) {
+        if (cellSizes[cell] == cellSlots[cell].length) {
+            cellSlots[cell] = Arrays.copyOf(cellSlots[cell], cellSlots[cell].length * 2);
+        }
+        cellSlots[cell][cellSizes[cell]++] = slot;
+        cellStamps[cell] = ++modificationCount;
+    }
+
+    /**
+     * Removes a slot from a bucket, moving the last slot in the bucket into it's place.
+     *
+     * @param cell The bucket to remove from
+     * @param slot The slot to remove
+     */
+    private void removeFromCell(int cell, int slot) {
+        int[] slots = cellSlots[cell];
+        int last = cellSizes[cell] - 1;
+        for (int i = 0; i <= last; i++) {
+            if (slots[i] == slot) {
+                slots[i] = slots[last];
+                cellSizes[cell]--;
+                cellStamps[cell] = ++modificationCount;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param x The x position in the world
+     * @param z The z position in the world
+     * @return The index of the bucket that contains the position
+     */
+    private int cellIndex(float x, float z) {
+        return cellCoordinate(x, originX) * cellsPerSide + cellCoordinate(z, originZ);
+    }
+
+    /**
+     * Converts a world coordinate into a bucket coordinate, clamping it to the grid.
+     *
+     * @param value  The coordinate in the world, along either the x or z axis
+     * @param origin The world coordinate the grid starts at, along that same axis
+     * @return The coordinate of the bucket along that same axis
+     */
+    private int cellCoordinate(float value, float origin) {
+        int cell = (int) Math.floor((value - origin) / CELL_SIZE);
+        return Math.min(Math.max(cell, 0), cellsPerSide - 1);
+    }
+}
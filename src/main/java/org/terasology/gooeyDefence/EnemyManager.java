@@ -16,11 +16,10 @@
 
 package org.terasology.gooeyDefence;
 
-import org.joml.AxisAngle4f;
-import org.joml.Math;
 import org.joml.Quaternionf;
 import org.joml.RoundingMode;
 import org.joml.Vector3f;
+import org.joml.Vector3fc;
 import org.joml.Vector3i;
 import org.terasology.economy.components.ValueComponent;
 import org.terasology.engine.entitySystem.entity.EntityManager;
@@ -39,19 +38,25 @@ import org.terasology.gooeyDefence.components.GooeyComponent;
 import org.terasology.gooeyDefence.events.OnEntrancePathCalculated;
 import org.terasology.gooeyDefence.events.OnFieldActivated;
 import org.terasology.gooeyDefence.events.OnFieldReset;
+import org.terasology.gooeyDefence.health.HealthComponent;
+import org.terasology.gooeyDefence.health.HealthSystem;
 import org.terasology.gooeyDefence.health.events.DamageEntityEvent;
 import org.terasology.gooeyDefence.health.events.EntityDeathEvent;
+import org.terasology.gooeyDefence.movement.EntrancePath;
+import org.terasology.gooeyDefence.movement.FlowField;
 import org.terasology.gooeyDefence.movement.PathfindingManager;
 import org.terasology.gooeyDefence.movement.components.BlankPathComponent;
 import org.terasology.gooeyDefence.movement.components.EntrancePathComponent;
+import org.terasology.gooeyDefence.movement.components.FlowPathComponent;
 import org.terasology.gooeyDefence.movement.components.MovementComponent;
 import org.terasology.gooeyDefence.movement.components.PathComponent;
 import org.terasology.gooeyDefence.movement.events.ReachedGoalEvent;
 import org.terasology.gooeyDefence.movement.events.RepathEnemyRequest;
 
+import java.util.Collection;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Handles all enemy based actions.
@@ -59,8 +64,33 @@ import java.util.Set;
 @Share(EnemyManager.class)
 @RegisterSystem
 public class EnemyManager extends BaseComponentSystem {
+    /**
+     * How far past the outer ring the enemy grid should extend.
+     * Given in blocks
+     */
+    private static final int GRID_MARGIN = 8;
 
-    private final Set<EntityRef> enemies = new HashSet<>();
+    /**
+     * The state of every enemy, packed into arrays by slot.
+     */
+    private final EnemyStateStore enemyStore = new EnemyStateStore();
+    /**
+     * Spatial index over the enemies, used for range queries.
+     */
+    private EnemyGrid enemyGrid;
+    /**
+     * Reused while copying positions out of the store.
+     */
+    private final Vector3f positionBuffer = new Vector3f();
+    /**
+     * Reused while turning enemies to face their next step.
+     */
+    private final Vector3f previousGoal = new Vector3f();
+    private final Quaternionf rotationBuffer = new Quaternionf();
+    /**
+     * Reused while looking up the flow field distance of an enemy's goal.
+     */
+    private final Vector3i goalBuffer = new Vector3i();
 
     @In
     private EntityManager entityManager;
@@ -68,6 +98,13 @@ public class EnemyManager extends BaseComponentSystem {
     private PathfindingManager pathfindingManager;
     @In
     private DelayManager delayManager;
+    @In
+    private HealthSystem healthSystem;
+
+    @Override
+    public void preBegin() {
+        enemyGrid = new EnemyGrid(enemyStore, DefenceField.outerRingSize + GRID_MARGIN);
+    }
 
     /**
      * Removes all the existing enemies.
@@ -78,8 +115,11 @@ public class EnemyManager extends BaseComponentSystem {
      */
     @ReceiveEvent
     public void onFieldReset(OnFieldReset event, EntityRef entity) {
-        enemies.forEach(EntityRef::destroy);
-        enemies.clear();
+        for (int slot = 0; slot < enemyStore.size(); slot++) {
+            enemyStore.getEntity(slot).destroy();
+        }
+        enemyStore.clear();
+        enemyGrid.clear();
     }
 
     /**
@@ -88,10 +128,20 @@ public class EnemyManager extends BaseComponentSystem {
      */
     @ReceiveEvent
     public void onFieldActivated(OnFieldActivated event, EntityRef entity) {
-        enemies.clear();
-        entityManager.getEntitiesWith(GooeyComponent.class).forEach(enemies::add);
-        enemies.stream().filter(enemy -> enemy.hasComponent(EntrancePathComponent.class))
-                .forEach(enemy -> enemy.getComponent(EntrancePathComponent.class).setPathManager(pathfindingManager));
+        enemyStore.clear();
+        enemyGrid.clear();
+        for (EntityRef enemy : entityManager.getEntitiesWith(GooeyComponent.class)) {
+            if (enemy.hasComponent(EntrancePathComponent.class)) {
+                enemy.getComponent(EntrancePathComponent.class).setPathManager(pathfindingManager);
+            }
+            if (enemy.hasComponent(FlowPathComponent.class)) {
+                enemy.getComponent(FlowPathComponent.class).setFlowField(pathfindingManager.getFlowField());
+            }
+            Vector3f position = enemy.getComponent(LocationComponent.class).getWorldPosition(new Vector3f());
+            int slot = enemyStore.add(enemy, position);
+            enemyGrid.add(slot);
+            updateProgress(slot);
+        }
     }
 
     /**
@@ -102,10 +152,14 @@ public class EnemyManager extends BaseComponentSystem {
     @ReceiveEvent
     public void onPathChanged(OnEntrancePathCalculated event, EntityRef shrineEntity) {
         if (DefenceField.fieldActivated) {
-            for (EntityRef enemy : enemies) {
-                /* Firstly check if the enemy is on an unchanged path */
+            int currentVersion = pathfindingManager.getEntrancePath(event.getPathId()).getVersion();
+            for (int slot = 0; slot < enemyStore.size(); slot++) {
+                EntityRef enemy = enemyStore.getEntity(slot);
+                /* Firstly check if the enemy is on an unchanged path, or already on the new one */
                 if (enemy.hasComponent(EntrancePathComponent.class)) {
-                    if (enemy.getComponent(EntrancePathComponent.class).getEntranceId() != event.getPathId()) {
+                    EntrancePathComponent entrancePathComponent = enemy.getComponent(EntrancePathComponent.class);
+                    if (entrancePathComponent.getEntranceId() != event.getPathId()
+                            || entrancePathComponent.getVersion() == currentVersion) {
                         continue;
                     }
                 }
@@ -113,22 +167,24 @@ public class EnemyManager extends BaseComponentSystem {
                 /* Check if the goal is on the new path */
                 MovementComponent movementComponent = enemy.getComponent(MovementComponent.class);
                 Vector3i goal = new Vector3i(movementComponent.goal, RoundingMode.FLOOR);
-                List<Vector3i> newPath = event.getNewPath();
+                int goalStep = pathfindingManager.getStep(event.getPathId(), goal);
 
                 enemy.removeComponent(DefenceField.getComponentExtending(enemy, PathComponent.class).getClass());
 
-                if (newPath.contains(goal)) {
+                if (goalStep >= 0) {
                     /* Add a entrance component starting at the given position */
                     EntrancePathComponent entranceComponent = new EntrancePathComponent(
                             event.getPathId(),
                             pathfindingManager,
-                            newPath.indexOf(goal));
+                            goalStep);
                     enemy.addComponent(entranceComponent);
                 } else {
                     /* Enemy isn't on the new path, so we have to calculate it's own path. */
                     enemy.addComponent(new BlankPathComponent(movementComponent.goal));
                     enemy.send(new RepathEnemyRequest());
                 }
+                enemyStore.readComponents(slot);
+                updateProgress(slot);
             }
         }
     }
@@ -158,33 +214,41 @@ public class EnemyManager extends BaseComponentSystem {
         event.consume();
         PathComponent pathComponent = DefenceField.getComponentExtending(entity, PathComponent.class);
         if (pathComponent.atEnd()) {
-            DefenceField.getShrineEntity().send(new DamageEntityEvent(gooeyComponent.damage));
+            healthSystem.queueDamage(DefenceField.getShrineEntity(), gooeyComponent.damage);
             destroyEnemy(entity);
         } else {
-            Vector3f prevGoal = pathComponent.getGoal();
-            pathComponent.nextStep();
-            Vector3f faceTowards = new Vector3f(pathComponent.getGoal());
-            faceTowards.sub(prevGoal);
-            if (faceTowards.y() == 0) {
-                Vector3f perpendicular = new Vector3f();
-                perpendicular.cross(new Vector3f(0,0,-1), faceTowards);
-                Quaternionf entityRot;
-                if (perpendicular.x() == 0.0f && perpendicular.y() == 0.0f && perpendicular.z() == 0.0f) {
-                    if (faceTowards.z < 0) {
-                        entityRot = new Quaternionf(new AxisAngle4f(0.0f,new Vector3f(0,0,1)));
-                    } else {
-                        entityRot = new Quaternionf(new AxisAngle4f((float) Math.PI, new Vector3f(0, 0, 1)));
-                    }
-                } else {
-                    double angle = Math.acos(faceTowards.normalize().dot(new Vector3f(0, 0, -1)));
-                    entityRot = new Quaternionf(new AxisAngle4f((float) angle, perpendicular));
+            boolean turn;
+            if (pathComponent instanceof EntrancePathComponent) {
+                /* Entrance paths have the rotations calculated in advance */
+                pathComponent.nextStep();
+                turn = ((EntrancePathComponent) pathComponent).getFacing(rotationBuffer);
+            } else {
+                previousGoal.set(pathComponent.getGoal());
+                pathComponent.nextStep();
+                if (pathComponent instanceof FlowPathComponent && ((FlowPathComponent) pathComponent).isLost()) {
+                    /* The field changed under the enemy, so it has to wait for a new path from where it is */
+                    entity.removeComponent(FlowPathComponent.class);
+                    entity.addComponent(new BlankPathComponent(previousGoal));
+                    entity.send(new RepathEnemyRequest());
+                    refreshEnemyState(entity);
+                    return;
                 }
+                turn = EntrancePath.calculateFacing(previousGoal, pathComponent.getGoal(), rotationBuffer);
+            }
+            if (turn) {
                 LocationComponent locationComponent = entity.getComponent(LocationComponent.class);
-                locationComponent.setLocalRotation(entityRot);
+                locationComponent.setLocalRotation(rotationBuffer);
                 entity.saveComponent(locationComponent);
             }
             MovementComponent component = entity.getComponent(MovementComponent.class);
             component.goal = pathComponent.getGoal();
+
+            int slot = enemyStore.getSlot(entity);
+            if (slot >= 0) {
+                enemyStore.setGoal(slot, component.goal);
+                enemyStore.setPathStep(slot, pathComponent.getStep());
+                updateProgress(slot);
+            }
         }
     }
 
@@ -202,7 +266,8 @@ public class EnemyManager extends BaseComponentSystem {
         }
 
 
-        EntityRef entity = entityManager.create(prefab, new Vector3f(DefenceField.entrancePos(entranceNumber)));
+        Vector3f spawnPos = new Vector3f(DefenceField.entrancePos(entranceNumber));
+        EntityRef entity = entityManager.create(prefab, spawnPos);
 
         /* Setup pathfinding component */
         EntrancePathComponent component = new EntrancePathComponent(entranceNumber, pathfindingManager);
@@ -211,7 +276,122 @@ public class EnemyManager extends BaseComponentSystem {
         MovementComponent movementComponent = entity.getComponent(MovementComponent.class);
         movementComponent.goal = component.getGoal();
 
-        enemies.add(entity);
+        int slot = enemyStore.add(entity, spawnPos);
+        enemyGrid.add(slot);
+        updateProgress(slot);
+    }
+
+    /**
+     * Re-reads the mirrored state of an enemy from it's components.
+     * Should be called after changing the movement, health or path of an enemy.
+     * Entities that are not enemies are ignored.
+     *
+     * @param enemy The enemy to refresh
+     * @see EnemyStateStore#readComponents(int)
+     */
+    public void refreshEnemyState(EntityRef enemy) {
+        int slot = enemyStore.getSlot(enemy);
+        if (slot >= 0) {
+            enemyStore.readComponents(slot);
+            updateProgress(slot);
+        }
+    }
+
+    /**
+     * Re-calculates how far an enemy has left to go, and stores it for picking the first enemy.
+     * <p>
+     * Path steps are only comparable between enemies on the same path, so the distance along the flow field from
+     * the enemy's goal is used where possible. Otherwise the remaining steps of it's own path are used.
+     * The flow field is never recalculated here, as that is left to the {@link PathfindingManager}.
+     *
+     * @param slot The slot of the enemy to update
+     */
+    private void updateProgress(int slot) {
+        EntityRef enemy = enemyStore.getEntity(slot);
+        FlowField flowField = pathfindingManager.getFlowField();
+        MovementComponent movementComponent = enemy.getComponent(MovementComponent.class);
+        int remainingSteps = -1;
+        if (flowField != null && movementComponent != null) {
+            remainingSteps = flowField.peekDistance(goalBuffer.set(movementComponent.goal, RoundingMode.FLOOR));
+        }
+        if (remainingSteps < 0) {
+            remainingSteps = Math.max(0, enemyStore.getPathStep(slot));
+        }
+        enemyStore.setRemainingSteps(slot, remainingSteps);
+    }
+
+    /**
+     * Keeps the mirrored health of an enemy up to date.
+     * Runs after the damage has been applied.
+     * <p>
+     * Filters on {@link GooeyComponent} and {@link HealthComponent}
+     *
+     * @see DamageEntityEvent
+     */
+    @Priority(EventPriority.PRIORITY_TRIVIAL)
+    @ReceiveEvent(components = GooeyComponent.class)
+    public void onDamageEntity(DamageEntityEvent event, EntityRef entity, HealthComponent healthComponent) {
+        int slot = enemyStore.getSlot(entity);
+        if (slot >= 0) {
+            enemyStore.setHealth(slot, healthComponent.health);
+        }
+    }
+
+    /**
+     * Copies the positions of all enemies out of the store and into their location components.
+     * Also moves the enemies between buckets in the enemy grid.
+     * <p>
+     * This is done as a single batch once the movement for a frame has been calculated.
+     * The location components are only changed in place, unless saving is requested.
+     * When saving, only the enemies that have moved since they were last saved are saved.
+     *
+     * @param save True if the changed location components should be saved
+     * @see EnemyStateStore#integrate(int, int, float)
+     */
+    public void writeEnemyPositions(boolean save) {
+        for (int slot = 0; slot < enemyStore.size(); slot++) {
+            if (!enemyStore.hasReachedGoal(slot)) {
+                enemyStore.writePosition(slot, positionBuffer);
+                enemyGrid.update(slot);
+            }
+            if (save) {
+                saveEnemyLocation(slot);
+            }
+        }
+    }
+
+    /**
+     * Saves the location component of an enemy, if it has moved since it was last saved.
+     *
+     * @param slot The slot of the enemy to save
+     */
+    public void saveEnemyLocation(int slot) {
+        if (enemyStore.isLocationDirty(slot)) {
+            EntityRef enemy = enemyStore.getEntity(slot);
+            LocationComponent locationComponent = enemy.getComponent(LocationComponent.class);
+            if (locationComponent != null) {
+                enemy.saveComponent(locationComponent);
+            }
+            enemyStore.clearLocationDirty(slot);
+        }
+    }
+
+    /**
+     * @param entity The entity to check
+     * @return True if the entity is an enemy tracked by this manager
+     */
+    public boolean isEnemy(EntityRef entity) {
+        return enemyStore.getSlot(entity) >= 0;
+    }
+
+    /**
+     * Get the store holding the packed state of all enemies.
+     * Slots in the store are only stable until the next enemy is destroyed.
+     *
+     * @return The enemy state store
+     */
+    public EnemyStateStore getEnemyStore() {
+        return enemyStore;
     }
 
     /**
@@ -220,7 +400,14 @@ public class EnemyManager extends BaseComponentSystem {
      * @param enemy The enemy to destroy
      */
     private void destroyEnemy(EntityRef enemy) {
-        enemies.remove(enemy);
+        int slot = enemyStore.getSlot(enemy);
+        if (slot >= 0) {
+            enemyGrid.remove(slot);
+            int movedSlot = enemyStore.remove(slot);
+            if (movedSlot >= 0) {
+                enemyGrid.renumber(movedSlot, slot);
+            }
+        }
         enemy.destroy();
     }
 
@@ -253,20 +440,108 @@ public class EnemyManager extends BaseComponentSystem {
 
     /**
      * Obtain all the enemies that are within range of the given position.
+     * <p>
+     * Allocates a new set on every call. Frequent callers should use
+     * {@link #getEnemiesInRange(Vector3fc, float, float, Collection)} with a reusable buffer instead.
      *
      * @param pos   The position to look for
      * @param range The range to search in.
      * @return A set of all enemies found within this range.
+     * @see EnemyGrid
      */
     public Set<EntityRef> getEnemiesInRange(Vector3f pos, float range) {
-        float rangeSqr = range * range;
         Set<EntityRef> result = new HashSet<>();
-        for (EntityRef enemy : enemies) {
-            Vector3f enemyPos = enemy.getComponent(LocationComponent.class).getWorldPosition(new Vector3f());
-            if (enemyPos.distanceSquared(pos) <= rangeSqr) {
-                result.add(enemy);
-            }
-        }
+        enemyGrid.addEnemiesInRange(pos, 0, range, result);
         return result;
     }
+
+    /**
+     * Fills the given buffer with all the enemies within range of the given position.
+     * The buffer is cleared before being filled.
+     *
+     * @param pos    The position to look for
+     * @param range  The range to search in.
+     * @param result The buffer to store the enemies found in
+     */
+    public void getEnemiesInRange(Vector3fc pos, float range, Collection<EntityRef> result) {
+        getEnemiesInRange(pos, 0, range, result);
+    }
+
+    /**
+     * Fills the given buffer with all the enemies within a ring around the given position.
+     * The buffer is cleared before being filled.
+     * <p>
+     * An enemy is within the ring if it's distance is more than the minimum range, and no more than the maximum range.
+     * Enemies that will die once their queued damage is dealt are left out.
+     *
+     * @param pos      The position to look for
+     * @param minRange The inner radius of the ring. Zero to include all enemies within the maximum range
+     * @param maxRange The outer radius of the ring
+     * @param result   The buffer to store the enemies found in
+     */
+    public void getEnemiesInRange(Vector3fc pos, float minRange, float maxRange, Collection<EntityRef> result) {
+        result.clear();
+        enemyGrid.addEnemiesInRange(pos, minRange, maxRange, result);
+    }
+
+    /**
+     * Fills the given buffer with every enemy in the grid buckets around a position, whether or not it's in range.
+     * The buffer is cleared before being filled.
+     * <p>
+     * The enemies found only change when the stamp from {@link #getRangeStamp(Vector3fc, float)} does,
+     * so they can be remembered and re-checked against the range instead of querying again.
+     *
+     * @param pos    The position to look for
+     * @param range  The range to search in
+     * @param result The buffer to store the enemies found in
+     */
+    public void getEnemiesNear(Vector3fc pos, float range, Collection<EntityRef> result) {
+        result.clear();
+        enemyGrid.addEnemiesInCells(pos, range, result);
+    }
+
+    /**
+     * Gets a stamp that changes whenever an enemy enters or leaves the area around a position.
+     * Used to tell if the result of an earlier range query can be reused.
+     *
+     * @param pos   The centre of the area
+     * @param range The radius of the area
+     * @return The stamp for the area
+     * @see EnemyGrid#getStamp(Vector3fc, float)
+     */
+    public long getRangeStamp(Vector3fc pos, float range) {
+        return enemyGrid.getStamp(pos, range);
+    }
+
+    /**
+     * Finds the enemy closest to the shrine within a ring around the given position.
+     * <p>
+     * Only the enemies in the grid buckets overlapping the ring are checked, comparing the remaining steps kept in
+     * the store. The ring is the same as for {@link #getEnemiesInRange(Vector3fc, float, float, Collection)}.
+     *
+     * @param pos      The position to look for
+     * @param minRange The inner radius of the ring. Zero to include all enemies within the maximum range
+     * @param maxRange The outer radius of the ring
+     * @return The most advanced enemy in range, or the null entity if there are none
+     * @see EnemyGrid#findMostAdvanced(Vector3fc, float, float)
+     */
+    public EntityRef getMostAdvancedEnemyInRange(Vector3fc pos, float minRange, float maxRange) {
+        int slot = enemyGrid.findMostAdvanced(pos, minRange, maxRange);
+        return slot >= 0 ? enemyStore.getEntity(slot) : EntityRef.NULL;
+    }
+
+    /**
+     * Calls the consumer with every enemy within a ring around the given position.
+     * Enemies that will die once their queued damage is dealt are left out.
+     * <p>
+     * The consumer must not spawn or destroy any enemies.
+     *
+     * @param pos      The position to look for
+     * @param minRange The inner radius of the ring. Zero to include all enemies within the maximum range
+     * @param maxRange The outer radius of the ring
+     * @param consumer The consumer to call with each enemy found
+     */
+    public void forEachEnemyInRange(Vector3fc pos, float minRange, float maxRange, Consumer<EntityRef> consumer) {
+        enemyGrid.forEachEnemyInRange(pos, minRange, maxRange, consumer);
+    }
 }
@@ -0,0 +1,524 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.gooeyDefence;
+
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.logic.location.LocationComponent;
+import org.terasology.gooeyDefence.health.HealthComponent;
+import org.terasology.gooeyDefence.movement.components.MovementComponent;
+import org.terasology.gooeyDefence.movement.components.PathComponent;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Mirrors the state of every enemy into packed primitive arrays.
+ * <p>
+ * Each enemy is given a dense slot, which indexes into every array. When an enemy is removed the last enemy
+ * is moved into it's slot so that the slots stay packed. This means slots are only stable until the next removal.
+ * <p>
+ * The arrays are the authoritative copy of the enemy positions during movement.
+ * The rest of the state is a copy of the components, and must be refreshed whenever the components are changed.
+ * <p>
+ * The store is also the only copy of the status effects on each enemy: when it's stun ends, the slows on it, and
+ * flags for other effects such as burning. The speed an enemy moves at is worked out from these once per tick by
+ * {@link #updateEffectiveSpeeds(int, int, long)}, so the speed in the movement component is never changed by them.
+ *
+ * @see EnemyManager
+ * @see EnemyGrid
+ */
+public final class EnemyStateStore {
+    /**
+     * The status flag for an enemy that is on fire.
+     */
+    public static final int STATUS_BURNING = 1;
+    /**
+     * The status flag for an enemy that is poisoned.
+     */
+    public static final int STATUS_POISONED = 1 << 1;
+    /**
+     * The status flag for an enemy whose queued damage will kill it when it is next dealt.
+     * Such enemies are left out of targeting, so that no more shots are wasted on them.
+     *
+     * @see org.terasology.gooeyDefence.health.HealthSystem#queueDamage(EntityRef, int)
+     */
+    public static final int STATUS_DYING = 1 << 2;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int INITIAL_SLOW_CAPACITY = 2;
+
+    private final Map<EntityRef, Integer> slots = new HashMap<>();
+    private EntityRef[] entities = new EntityRef[INITIAL_CAPACITY];
+    private float[] positionX = new float[INITIAL_CAPACITY];
+    private float[] positionY = new float[INITIAL_CAPACITY];
+    private float[] positionZ = new float[INITIAL_CAPACITY];
+    private float[] goalX = new float[INITIAL_CAPACITY];
+    private float[] goalY = new float[INITIAL_CAPACITY];
+    private float[] goalZ = new float[INITIAL_CAPACITY];
+    private float[] speed = new float[INITIAL_CAPACITY];
+    private float[] reachedDistance = new float[INITIAL_CAPACITY];
+    private int[] pathStep = new int[INITIAL_CAPACITY];
+    /**
+     * The number of steps each enemy has left until it reaches the shrine.
+     * Comparable between enemies on different paths, unlike {@link #pathStep}.
+     */
+    private int[] remainingSteps = new int[INITIAL_CAPACITY];
+    private int[] health = new int[INITIAL_CAPACITY];
+    /**
+     * The game time each enemy's stun ends at, in milliseconds.
+     */
+    private long[] stunExpiry = new long[INITIAL_CAPACITY];
+    /**
+     * The factor of each slow on each enemy. Only the first {@link #slowCounts} entries are in use.
+     * Created on the first slow, and kept for the slot afterwards.
+     */
+    private float[][] slowFactors = new float[INITIAL_CAPACITY][];
+    private int[] slowCounts = new int[INITIAL_CAPACITY];
+    /**
+     * The product of all the slows on each enemy.
+     * Always recalculated from {@link #slowFactors}, so that adding and removing slows doesn't drift.
+     */
+    private float[] slowMultiplier = new float[INITIAL_CAPACITY];
+    private int[] statusFlags = new int[INITIAL_CAPACITY];
+    /**
+     * The speed each enemy moves at this tick, with the status effects applied.
+     */
+    private float[] effectiveSpeed = new float[INITIAL_CAPACITY];
+    /**
+     * Flags set by {@link #integrate(int, int, float)} for enemies that reached their goal instead of moving.
+     */
+    private boolean[] reachedGoal = new boolean[INITIAL_CAPACITY];
+    /**
+     * Flags for enemies that have moved since their location component was last saved.
+     */
+    private boolean[] locationDirty = new boolean[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * @return The number of enemies in the store. All slots below this are in use.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param entity The enemy to look for
+     * @return The slot of the enemy, or -1 if it isn't in the store
+     */
+    public int getSlot(EntityRef entity) {
+        Integer slot = slots.get(entity);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Adds an enemy to the store, reading it's state from it's components.
+     *
+     * @param entity   The enemy to add
+     * @param position The current position of the enemy
+     * @return The slot given to the enemy
+     */
+    public int add(EntityRef entity, Vector3fc position) {
+        int slot = getSlot(entity);
+        if (slot < 0) {
+            ensureCapacity(size + 1);
+            slot = size++;
+            entities[slot] = entity;
+            slots.put(entity, slot);
+            stunExpiry[slot] = 0;
+            slowCounts[slot] = 0;
+            slowMultiplier[slot] = 1;
+            statusFlags[slot] = 0;
+        }
+        setPosition(slot, position);
+        reachedGoal[slot] = false;
+        locationDirty[slot] = false;
+        readComponents(slot);
+        effectiveSpeed[slot] = speed[slot] * slowMultiplier[slot];
+        return slot;
+    }
+
+    /**
+     * Removes an enemy from the store.
+     * The last enemy in the store is moved into the freed slot.
+     *
+     * @param slot The slot of the enemy to remove
+     * @return The slot the moved enemy used to be in, or -1 if no enemy was moved
+     */
+    public int remove(int slot) {
+        int last = size - 1;
+        slots.remove(entities[slot]);
+        int moved = -1;
+        if (slot != last) {
+            copySlot(last, slot);
+            slots.put(entities[slot], slot);
+            moved = last;
+        }
+        entities[last] = null;
+        /* The slow list was moved along with the enemy, so it mustn't be shared with the freed slot */
+        slowFactors[last] = null;
+        size--;
+        return moved;
+    }
+
+    /**
+     * Removes all enemies from the store.
+     */
+    public void clear() {
+        Arrays.fill(entities, 0, size, null);
+        slots.clear();
+        size = 0;
+    }
+
+    /**
+     * Re-reads the goal, speed, path step and health of an enemy from it's components.
+     * The position is not read, as the store holds the authoritative copy of it.
+     *
+     * @param slot The slot of the enemy to refresh
+     */
+    public void readComponents(int slot) {
+        EntityRef entity = entities[slot];
+        MovementComponent movementComponent = entity.getComponent(MovementComponent.class);
+        if (movementComponent != null) {
+            setGoal(slot, movementComponent.goal);
+            speed[slot] = movementComponent.speed;
+            reachedDistance[slot] = movementComponent.reachedDistance;
+        }
+        HealthComponent healthComponent = entity.getComponent(HealthComponent.class);
+        if (healthComponent != null) {
+            health[slot] = healthComponent.health;
+        }
+        if (DefenceField.hasComponentExtending(entity, PathComponent.class)) {
+            pathStep[slot] = DefenceField.getComponentExtending(entity, PathComponent.class).getStep();
+        }
+    }
+
+    /**
+     * Moves each enemy in a range of slots towards it's goal.
+     * <p>
+     * Enemies that are already at their goal are not moved, and are instead flagged as having reached it.
+     * Enemies that are moved are flagged as having a dirty location. Stunned enemies don't move, so aren't flagged.
+     * This only touches the arrays, so is safe to run on disjoint ranges of slots at the same time.
+     *
+     * @param fromSlot The first slot to move, inclusive
+     * @param toSlot   The last slot to move, exclusive
+     * @param delta    The time the last frame took in seconds.
+     * @see #hasReachedGoal(int)
+     */
+    public void integrate(int fromSlot, int toSlot, float delta) {
+        for (int slot = fromSlot; slot < toSlot; slot++) {
+            float dx = goalX[slot] - positionX[slot];
+            float dy = goalY[slot] - positionY[slot];
+            float dz = goalZ[slot] - positionZ[slot];
+            float distSqr = dx * dx + dy * dy + dz * dz;
+            if (distSqr < reachedDistance[slot]) {
+                reachedGoal[slot] = true;
+            } else {
+                reachedGoal[slot] = false;
+                /* Calculate required heading, scaled to the speed */
+                float scale = effectiveSpeed[slot] * delta / (float) Math.sqrt(distSqr);
+                if (scale != 0) {
+                    positionX[slot] += dx * scale;
+                    positionY[slot] += dy * scale;
+                    positionZ[slot] += dz * scale;
+                    locationDirty[slot] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Works out the speed each enemy in a range of slots moves at, from it's base speed and status effects.
+     * Stunned enemies don't move, and slowed enemies are slowed by every slow on them.
+     *
+     * @param fromSlot The first slot to update, inclusive
+     * @param toSlot   The last slot to update, exclusive
+     * @param time     The current game time in milliseconds
+     */
+    public void updateEffectiveSpeeds(int fromSlot, int toSlot, long time) {
+        for (int slot = fromSlot; slot < toSlot; slot++) {
+            effectiveSpeed[slot] = stunExpiry[slot] > time ? 0 : speed[slot] * slowMultiplier[slot];
+        }
+    }
+
+    /**
+     * Copies the position of an enemy into it's location component.
+     * The component is changed in place, so it still needs to be saved for the change to be sent out.
+     *
+     * @param slot   The slot of the enemy
+     * @param buffer A vector to use while copying
+     * @return The location component, for the caller to save.
+     */
+    public LocationComponent writePosition(int slot, Vector3f buffer) {
+        LocationComponent locationComponent = entities[slot].getComponent(LocationComponent.class);
+        if (locationComponent != null) {
+            locationComponent.setWorldPosition(getPosition(slot, buffer));
+        }
+        return locationComponent;
+    }
+
+    public EntityRef getEntity(int slot) {
+        return entities[slot];
+    }
+
+    public float getPositionX(int slot) {
+        return positionX[slot];
+    }
+
+    public float getPositionY(int slot) {
+        return positionY[slot];
+    }
+
+    public float getPositionZ(int slot) {
+        return positionZ[slot];
+    }
+
+    /**
+     * @param slot The slot of the enemy
+     * @param dest The vector to store the position in
+     * @return The destination vector
+     */
+    public Vector3f getPosition(int slot, Vector3f dest) {
+        return dest.set(positionX[slot], positionY[slot], positionZ[slot]);
+    }
+
+    public void setPosition(int slot, Vector3fc position) {
+        positionX[slot] = position.x();
+        positionY[slot] = position.y();
+        positionZ[slot] = position.z();
+    }
+
+    /**
+     * @param slot     The slot of the enemy
+     * @param position The position to measure to
+     * @return The square of the distance from the enemy to the position
+     */
+    public float distanceSquared(int slot, Vector3fc position) {
+        float dx = positionX[slot] - position.x();
+        float dy = positionY[slot] - position.y();
+        float dz = positionZ[slot] - position.z();
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    public void setGoal(int slot, Vector3fc goal) {
+        goalX[slot] = goal.x();
+        goalY[slot] = goal.y();
+        goalZ[slot] = goal.z();
+    }
+
+    public float getSpeed(int slot) {
+        return speed[slot];
+    }
+
+    public void setSpeed(int slot, float value) {
+        speed[slot] = value;
+    }
+
+    public int getPathStep(int slot) {
+        return pathStep[slot];
+    }
+
+    public void setPathStep(int slot, int value) {
+        pathStep[slot] = value;
+    }
+
+    /**
+     * @param slot The slot of the enemy
+     * @return The number of steps the enemy has left until it reaches the shrine
+     */
+    public int getRemainingSteps(int slot) {
+        return remainingSteps[slot];
+    }
+
+    public void setRemainingSteps(int slot, int value) {
+        remainingSteps[slot] = value;
+    }
+
+    public int getHealth(int slot) {
+        return health[slot];
+    }
+
+    public void setHealth(int slot, int value) {
+        health[slot] = value;
+    }
+
+    /**
+     * @param slot The slot of the enemy
+     * @return The game time the enemy's stun ends at, in milliseconds. In the past if the enemy isn't stunned.
+     */
+    public long getStunExpiry(int slot) {
+        return stunExpiry[slot];
+    }
+
+    /**
+     * @param slot The slot of the enemy
+     * @param time The game time the stun should end at, in milliseconds. Zero removes the stun.
+     */
+    public void setStunExpiry(int slot, long time) {
+        stunExpiry[slot] = time;
+    }
+
+    /**
+     * Adds a slow to an enemy.
+     *
+     * @param slot   The slot of the enemy
+     * @param factor The factor to multiply the enemy's speed by
+     */
+    public void addSlow(int slot, float factor) {
+        float[] factors = slowFactors[slot];
+        if (factors == null) {
+            factors = new float[INITIAL_SLOW_CAPACITY];
+        } else if (slowCounts[slot] == factors.length) {
+            factors = Arrays.copyOf(factors, factors.length * 2);
+        }
+        factors[slowCounts[slot]++] = factor;
+        slowFactors[slot] = factors;
+        recalculateSlow(slot);
+    }
+
+    /**
+     * Removes a single slow with the given factor from an enemy, if it has one.
+     *
+     * @param slot   The slot of the enemy
+     * @param factor The factor of the slow to remove
+     */
+    public void removeSlow(int slot, float factor) {
+        float[] factors = slowFactors[slot];
+        for (int i = 0; i < slowCounts[slot]; i++) {
+            if (factors[i] == factor) {
+                factors[i] = factors[--slowCounts[slot]];
+                recalculateSlow(slot);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param slot The slot of the enemy
+     * @return The number of slows on the enemy
+     */
+    public int getSlowCount(int slot) {
+        return slowCounts[slot];
+    }
+
+    /**
+     * @param slot The slot of the enemy
+     * @param flag The status flag to check, such as {@link #STATUS_BURNING}
+     * @return True if the enemy has the status
+     */
+    public boolean hasStatus(int slot, int flag) {
+        return (statusFlags[slot] & flag) != 0;
+    }
+
+    /**
+     * @param slot  The slot of the enemy
+     * @param flag  The status flag to change, such as {@link #STATUS_BURNING}
+     * @param value True to give the enemy the status, false to take it away
+     */
+    public void setStatus(int slot, int flag, boolean value) {
+        if (value) {
+            statusFlags[slot] |= flag;
+        } else {
+            statusFlags[slot] &= ~flag;
+        }
+    }
+
+    /**
+     * @param slot The slot of the enemy
+     * @return True if the enemy was at it's goal during the last {@link #integrate(int, int, float)}
+     */
+    public boolean hasReachedGoal(int slot) {
+        return reachedGoal[slot];
+    }
+
+    /**
+     * @param slot The slot of the enemy
+     * @return True if the enemy has moved since it's location component was last saved
+     */
+    public boolean isLocationDirty(int slot) {
+        return locationDirty[slot];
+    }
+
+    /**
+     * Marks the location component of an enemy as saved.
+     *
+     * @param slot The slot of the enemy
+     */
+    public void clearLocationDirty(int slot) {
+        locationDirty[slot] = false;
+    }
+
+    /**
+     * Copies all the state from one slot into another.
+     *
+     * @param from The slot to copy from
+     * @param to   The slot to copy into
+     */
+    private void copySlot(int from, int to) {
+        entities[to] = entities[from];
+        positionX[to] = positionX[from];
+        positionY[to] = positionY[from];
+        positionZ[to] = positionZ[from];
+        goalX[to] = goalX[from];
+        goalY[to] = goalY[from];
+        goalZ[to] = goalZ[from];
+        speed[to] = speed[from];
+        reachedDistance[to] = reachedDistance[from];
+        pathStep[to] = pathStep[from];
+        remainingSteps[to] = remainingSteps[from];
+        health[to] = health[from];
+        stunExpiry[to] = stunExpiry[from];
+        slowFactors[to] = slowFactors[from];
+        slowCounts[to] = slowCounts[from];
+        slowMultiplier[to] = slowMultiplier[from];
+        statusFlags[to] = statusFlags[from];
+        effectiveSpeed[to] = effectiveSpeed[from];
+        reachedGoal[to] = reachedGoal[from];
+        locationDirty[to] = locationDirty[from];
+    }
+
+    /**
+     * Sets the slow multiplier of an enemy to the product of all it's slows.
+     *
+     * @param slot The slot of the enemy
+     */
+    private void recalculateSlow(int slot) {
+        float multiplier = 1;
+        for (int i = 0; i < slowCounts[slot]; i++) {
+            multiplier *= slowFactors[slot][i];
+        }
+        slowMultiplier[slot] = multiplier;
+    }
+
+    /**
+     * Grows all the arrays so that they can hold at least the given number of enemies.
+     *
+     * @param capacity The number of enemies needed
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > entities.length) {
+            int newCapacity = Math.max(capacity, entities.length * 2);
+            entities = Arrays.copyOf(entities, newCapacity);
+            positionX = Arrays.copyOf(positionX, newCapacity);
+            positionY = Arrays.copyOf(positionY, newCapacity);
+            positionZ = Arrays.copyOf(positionZ, newCapacity);
+            goalX = Arrays.copyOf(goalX, newCapacity);
+            goalY = Arrays.copyOf(goalY, newCapacity);
+            goalZ = Arrays.copyOf(goalZ, newCapacity);
+            speed = Arrays.copyOf(speed, newCapacity);
+            reachedDistance = Arrays.copyOf(reachedDistance, newCapacity);
+            pathStep = Arrays.copyOf(pathStep, newCapacity);
+            remainingSteps = Arrays.copyOf(remainingSteps, newCapacity);
+            health = Arrays.copyOf(health, newCapacity);
+            stunExpiry = Arrays.copyOf(stunExpiry, newCapacity);
+            slowFactors = Arrays.copyOf(slowFactors, newCapacity);
+            slowCounts = Arrays.copyOf(slowCounts, newCapacity);
+            slowMultiplier = Arrays.copyOf(slowMultiplier, newCapacity);
+            statusFlags = Arrays.copyOf(statusFlags, newCapacity);
+            effectiveSpeed = Arrays.copyOf(effectiveSpeed, newCapacity);
+            reachedGoal = Arrays.copyOf(reachedGoal, newCapacity);
+            locationDirty = Arrays.copyOf(locationDirty, newCapacity);
+        }
+    }
+}
@@ -19,6 +19,14 @@ public class FieldConfigComponent implements Component<FieldConfigComponent> {
     public int shrineRingSize;
     public int outerRingSize;
     public int entranceRingSize;
+    public float movementSyncInterval;
+    public boolean parallelMovement;
+    public float pathRecalculateInterval;
+    public boolean perHitDamageEvents;
+    public int fireSpreadBudget;
+    public long fireSpreadSeed;
+    public int bulletPoolCap;
+    public int bulletPoolPrewarm;
     public final List<List<List<Integer>>> shrineData = new ArrayList<>();
 
     @Override
@@ -27,6 +35,14 @@ public class FieldConfigComponent implements Component<FieldConfigComponent> {
         this.shrineRingSize = other.shrineRingSize;
         this.outerRingSize = other.outerRingSize;
         this.entranceRingSize = other.entranceRingSize;
+        this.movementSyncInterval = other.movementSyncInterval;
+        this.parallelMovement = other.parallelMovement;
+        this.pathRecalculateInterval = other.pathRecalculateInterval;
+        this.perHitDamageEvents = other.perHitDamageEvents;
+        this.fireSpreadBudget = other.fireSpreadBudget;
+        this.fireSpreadSeed = other.fireSpreadSeed;
+        this.bulletPoolCap = other.bulletPoolCap;
+        this.bulletPoolPrewarm = other.bulletPoolPrewarm;
         this.shrineData.clear();
         this.shrineData.addAll(other.shrineData);
     }
@@ -20,19 +20,99 @@ import org.terasology.engine.entitySystem.event.EventPriority;
 import org.terasology.engine.entitySystem.event.Priority;
 import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
 import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.entitySystem.systems.UpdateSubscriberSystem;
+import org.terasology.engine.registry.In;
+import org.terasology.engine.registry.Share;
 import org.terasology.gestalt.entitysystem.event.ReceiveEvent;
+import org.terasology.gooeyDefence.DefenceField;
+import org.terasology.gooeyDefence.EnemyManager;
+import org.terasology.gooeyDefence.EnemyStateStore;
 import org.terasology.gooeyDefence.events.OnFieldActivated;
 import org.terasology.gooeyDefence.events.OnFieldReset;
 import org.terasology.gooeyDefence.health.events.DamageEntityEvent;
 import org.terasology.gooeyDefence.health.events.EntityDeathEvent;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Handles operations involving health on entities.
+ * <p>
+ * Damage queued with {@link #queueDamage(EntityRef, int)} is summed for each entity, and dealt as a single
+ * {@link DamageEntityEvent} when it is flushed. This means each entity has it's health changed, and can die,
+ * at most once per flush no matter how many hits it takes.
+ * <p>
+ * The towers and damage over time flush the queue straight after dealing their damage, so that enemies die in
+ * the same step they are killed. Anything left is flushed at the end of the tick.
+ * Enemies whose queued damage will kill them are marked as dying in the enemy store until then,
+ * so that targeters skip them.
  *
  * @see HealthComponent
  */
 @RegisterSystem
-public class HealthSystem extends BaseComponentSystem {
+@Share(HealthSystem.class)
+public class HealthSystem extends BaseComponentSystem implements UpdateSubscriberSystem {
+    /**
+     * The damage waiting to be dealt to each entity.
+     */
+    private final Map<EntityRef, Integer> queuedDamage = new LinkedHashMap<>();
+
+    @In
+    private EnemyManager enemyManager;
+
+    /**
+     * Queues damage to be dealt to an entity when the queue is next flushed.
+     * <p>
+     * If {@link DefenceField#perHitDamageEvents} is set, the damage is instead dealt straight away
+     * so that every hit sends it's own event.
+     *
+     * @see #flushDamage()
+     *
+     * @param entity The entity to damage
+     * @param damage The amount of damage to deal
+     */
+    public void queueDamage(EntityRef entity, int damage) {
+        if (DefenceField.perHitDamageEvents) {
+            entity.send(new DamageEntityEvent(damage));
+        } else {
+            int total = queuedDamage.merge(entity, damage, Integer::sum);
+            EnemyStateStore store = enemyManager.getEnemyStore();
+            int slot = store.getSlot(entity);
+            if (slot >= 0 && total >= store.getHealth(slot)) {
+                store.setStatus(slot, EnemyStateStore.STATUS_DYING, true);
+            }
+        }
+    }
+
+    /**
+     * Deals all the queued damage, as one event per entity.
+     * Enemies that survive their damage are no longer marked as dying.
+     */
+    public void flushDamage() {
+        if (queuedDamage.isEmpty()) {
+            return;
+        }
+        EnemyStateStore store = enemyManager.getEnemyStore();
+        for (Map.Entry<EntityRef, Integer> entry : queuedDamage.entrySet()) {
+            EntityRef entity = entry.getKey();
+            if (entity.exists()) {
+                entity.send(new DamageEntityEvent(entry.getValue()));
+                int slot = store.getSlot(entity);
+                if (slot >= 0) {
+                    store.setStatus(slot, EnemyStateStore.STATUS_DYING, false);
+                }
+            }
+        }
+        queuedDamage.clear();
+    }
+
+    /**
+     * Deals any damage still queued at the end of the tick.
+     */
+    @Override
+    public void update(float delta) {
+        flushDamage();
+    }
 
     /**
      * Deals damage to an entity.
@@ -77,6 +157,7 @@ public class HealthSystem extends BaseComponentSystem {
      */
     @ReceiveEvent
     public void onFieldReset(OnFieldReset event, EntityRef entity) {
+        queuedDamage.clear();
         HealthComponent healthComponent = entity.getParentPrefab().getComponent(HealthComponent.class);
         entity.addOrSaveComponent(healthComponent);
     }
@@ -28,6 +28,17 @@ import org.terasology.flexiblepathfinding.plugins.basic.WalkingPlugin;
  * @see WalkingPlugin
  */
 public class EnemyWalkingPlugin extends WalkingPlugin {
+    /**
+     * The moves an enemy can make from one position to the next.
+     * All 8 horizontal directions, then up and down.
+     * Stored in pairs of opposite directions, so that flipping the lowest bit of an index reverses it.
+     */
+    static final Vector3ic[] MOVES = {
+            new Vector3i(1, 0, 0), new Vector3i(-1, 0, 0), new Vector3i(0, 0, 1), new Vector3i(0, 0, -1),
+            new Vector3i(1, 0, 1), new Vector3i(-1, 0, -1), new Vector3i(1, 0, -1), new Vector3i(-1, 0, 1),
+            new Vector3i(0, 1, 0), new Vector3i(0, -1, 0)
+    };
+
     public EnemyWalkingPlugin(WorldProvider world, float width, float height) {
         super(world, width, height);
     }
@@ -0,0 +1,225 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.gooeyDefence.movement;
+
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable path from an entrance to the shrine, along with an index from each position on the path to it's step.
+ * <p>
+ * The index is an open addressing hash table keyed on the packed block coordinates,
+ * so looking up the step of a position doesn't need to search the path.
+ * <p>
+ * The positions and the rotation an enemy should face when moving into each step are also packed into arrays.
+ * This means following the path doesn't need to allocate anything.
+ * Each path is given a version, so that components can tell when the path they were following has been replaced.
+ *
+ * @see PathfindingManager
+ * @see org.terasology.gooeyDefence.movement.components.EntrancePathComponent
+ */
+public final class EntrancePath {
+    /**
+     * Marks an empty entry in the index, or a position not on the path.
+     */
+    private static final int NO_STEP = -1;
+    private static final int COORDINATE_BITS = 21;
+    private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+
+    private final List<Vector3i> path;
+    private final int version;
+    /**
+     * The x, y and z of each step, packed one after another.
+     */
+    private final float[] positions;
+    /**
+     * The x, y, z and w of the rotation to face when moving into each step, packed one after another.
+     */
+    private final float[] rotations;
+    /**
+     * If the enemy should turn to face it's direction when moving into each step.
+     */
+    private final boolean[] facing;
+    private final long[] keys;
+    private final int[] steps;
+    private final int mask;
+
+    /**
+     * Creates a new entrance path, indexing every position on it.
+     *
+     * @param path    The path, with step zero being the shrine
+     * @param version The version of the path. Should be different for each path made for an entrance.
+     */
+    public EntrancePath(List<Vector3i> path, int version) {
+        this.path = Collections.unmodifiableList(new ArrayList<>(path));
+        this.version = version;
+        /* Keep the table at most half full */
+        int capacity = Integer.highestOneBit(Math.max(path.size(), 1) * 2) * 2;
+        keys = new long[capacity];
+        steps = new int[capacity];
+        mask = capacity - 1;
+        Arrays.fill(steps, NO_STEP);
+        for (int step = 0; step < path.size(); step++) {
+            Vector3i position = path.get(step);
+            insert(pack(position.x(), position.y(), position.z()), step);
+        }
+
+        positions = new float[path.size() * 3];
+        for (int step = 0; step < path.size(); step++) {
+            Vector3i position = path.get(step);
+            positions[step * 3] = position.x();
+            positions[step * 3 + 1] = position.y();
+            positions[step * 3 + 2] = position.z();
+        }
+
+        /* Enemies move from the highest step down, so the rotation into a step faces away from the step above */
+        rotations = new float[path.size() * 4];
+        facing = new boolean[path.size()];
+        Quaternionf rotation = new Quaternionf();
+        for (int step = 0; step < path.size() - 1; step++) {
+            Vector3f from = getPosition(step + 1, new Vector3f());
+            Vector3f to = getPosition(step, new Vector3f());
+            if (calculateFacing(from, to, rotation)) {
+                facing[step] = true;
+                rotations[step * 4] = rotation.x;
+                rotations[step * 4 + 1] = rotation.y;
+                rotations[step * 4 + 2] = rotation.z;
+                rotations[step * 4 + 3] = rotation.w;
+            }
+        }
+    }
+
+    /**
+     * Calculates the rotation an enemy should face when moving between two positions.
+     * Enemies only turn when moving horizontally.
+     *
+     * @param from The position being moved from
+     * @param to   The position being moved to
+     * @param dest The quaternion to store the rotation in
+     * @return True if the enemy should turn, false if the movement isn't horizontal.
+     */
+    public static boolean calculateFacing(Vector3fc from, Vector3fc to, Quaternionf dest) {
+        float dx = to.x() - from.x();
+        float dz = to.z() - from.z();
+        if (to.y() != from.y()) {
+            return false;
+        }
+        /* The axis to rotate around is perpendicular to both the movement and the default facing of (0, 0, -1) */
+        if (dx == 0) {
+            if (dz < 0) {
+                dest.identity();
+            } else {
+                dest.fromAxisAngleRad(0, 0, 1, (float) Math.PI);
+            }
+        } else {
+            float angle = (float) Math.acos(-dz / Math.sqrt(dx * dx + dz * dz));
+            dest.fromAxisAngleRad(0, -dx, 0, angle);
+        }
+        return true;
+    }
+
+    /**
+     * @return The version of this path
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The number of steps in the path
+     */
+    public int size() {
+        return path.size();
+    }
+
+    /**
+     * @param step The step to get
+     * @param dest The vector to store the position in
+     * @return The destination vector
+     */
+    public Vector3f getPosition(int step, Vector3f dest) {
+        return dest.set(positions[step * 3], positions[step * 3 + 1], positions[step * 3 + 2]);
+    }
+
+    /**
+     * Gets the rotation an enemy should face when moving into a step.
+     *
+     * @param step The step being moved into
+     * @param dest The quaternion to store the rotation in
+     * @return True if the enemy should turn, false if the rotation should be left as is.
+     */
+    public boolean getRotation(int step, Quaternionf dest) {
+        if (!facing[step]) {
+            return false;
+        }
+        dest.set(rotations[step * 4], rotations[step * 4 + 1], rotations[step * 4 + 2], rotations[step * 4 + 3]);
+        return true;
+    }
+
+    /**
+     * @return The positions along the path, with step zero being the shrine. The list cannot be modified.
+     */
+    public List<Vector3i> getPath() {
+        return path;
+    }
+
+    /**
+     * Finds the step of a position on the path.
+     * If the position appears more than once, the lowest step is given.
+     *
+     * @param position The position to look for
+     * @return The step of the position, or -1 if it is not on the path
+     */
+    public int getStep(Vector3ic position) {
+        long key = pack(position.x(), position.y(), position.z());
+        for (int slot = hash(key) & mask; steps[slot] != NO_STEP; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return steps[slot];
+            }
+        }
+        return NO_STEP;
+    }
+
+    /**
+     * Adds a position to the index, unless it's already there.
+     *
+     * @param key  The packed position
+     * @param step The step of the position
+     */
+    private void insert(long key, int step) {
+        int slot = hash(key) & mask;
+        while (steps[slot] != NO_STEP) {
+            if (keys[slot] == key) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        steps[slot] = step;
+    }
+
+    /**
+     * Packs a block position into a single long, using 21 bits for each coordinate.
+     */
+    private static long pack(int x, int y, int z) {
+        return ((x & COORDINATE_MASK) << (COORDINATE_BITS * 2))
+                | ((y & COORDINATE_MASK) << COORDINATE_BITS)
+                | (z & COORDINATE_MASK);
+    }
+
+    /**
+     * Spreads the bits of a packed position so that nearby positions don't cluster in the table.
+     */
+    private static int hash(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+}
@@ -0,0 +1,209 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.gooeyDefence.movement;
+
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
+import org.terasology.gooeyDefence.DefenceField;
+
+import java.util.Arrays;
+
+/**
+ * A distance-to-shrine grid covering the whole field.
+ * <p>
+ * Calculated with a single breadth first search outwards from {@link DefenceField#FIELD_CENTRE}, using the same
+ * {@link EnemyWalkingPlugin} rules as the entrance paths. Each reachable position stores the number of steps to
+ * the centre, and the direction of the next step. Any enemy on the field can then follow the field to the shrine
+ * without needing a search of it's own.
+ * <p>
+ * The field is recalculated when it is next used after being marked dirty, or by {@link #ensureCalculated()}.
+ *
+ * @see PathfindingManager
+ * @see org.terasology.gooeyDefence.movement.components.FlowPathComponent
+ */
+public class FlowField {
+    /**
+     * How far above and below the field centre the flow field extends.
+     * Given in blocks
+     */
+    private static final int HEIGHT_RANGE = 8;
+    /**
+     * Marks a position that cannot reach the centre.
+     */
+    private static final int UNREACHABLE = -1;
+    private static final Vector3ic[] DIRECTIONS = EnemyWalkingPlugin.MOVES;
+
+    private final EnemyWalkingPlugin plugin;
+    private final int radius;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    /**
+     * The number of steps from each position to the centre, or {@link #UNREACHABLE}.
+     */
+    private final int[] distances;
+    /**
+     * The index into {@link #DIRECTIONS} of the next step from each position.
+     */
+    private final byte[] directions;
+    /**
+     * The queue used by the search, reused between calculations.
+     */
+    private final int[] queue;
+    private boolean dirty = true;
+
+    /**
+     * Creates a new flow field covering a circle around the field centre.
+     * The field will be calculated when it is first used.
+     *
+     * @param plugin The plugin to check movement between positions with
+     * @param radius The radius of the circle to cover. Given in blocks.
+     */
+    public FlowField(EnemyWalkingPlugin plugin, int radius) {
+        this.plugin = plugin;
+        this.radius = radius;
+        sizeX = radius * 2 + 1;
+        sizeY = HEIGHT_RANGE * 2 + 1;
+        sizeZ = radius * 2 + 1;
+        distances = new int[sizeX * sizeY * sizeZ];
+        directions = new byte[sizeX * sizeY * sizeZ];
+        queue = new int[sizeX * sizeY * sizeZ];
+    }
+
+    /**
+     * Flags the field to be recalculated the next time it's used.
+     * This is cheap, and so is safe to call on every block change.
+     */
+    public void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * @param pos The position to check
+     * @return True if an enemy at the position can follow the field to the centre.
+     */
+    public boolean isReachable(Vector3ic pos) {
+        return getDistance(pos) != UNREACHABLE;
+    }
+
+    /**
+     * Gets the number of steps from a position to the centre.
+     *
+     * @param pos The position to check
+     * @return The number of steps, or -1 if the centre cannot be reached from there
+     */
+    public int getDistance(Vector3ic pos) {
+        ensureCalculated();
+        int index = indexOf(pos.x(), pos.y(), pos.z());
+        return index < 0 ? UNREACHABLE : distances[index];
+    }
+
+    /**
+     * Gets the number of steps from a position to the centre, without recalculating the field.
+     * Cheap enough to call for every enemy step, as it never triggers a search.
+     *
+     * @param pos The position to check
+     * @return The number of steps, or -1 if the centre cannot be reached from there or the field is dirty
+     */
+    public int peekDistance(Vector3ic pos) {
+        if (dirty) {
+            return UNREACHABLE;
+        }
+        int index = indexOf(pos.x(), pos.y(), pos.z());
+        return index < 0 ? UNREACHABLE : distances[index];
+    }
+
+    /**
+     * Gets the next position to move to from the given position.
+     *
+     * @param pos  The position to move from
+     * @param dest The vector to store the next position in
+     * @return True if there was a next step. False if the position is the centre, or cannot reach it.
+     */
+    public boolean getNextStep(Vector3ic pos, Vector3i dest) {
+        int distance = getDistance(pos);
+        if (distance <= 0) {
+            return false;
+        }
+        dest.set(pos).add(DIRECTIONS[directions[indexOf(pos.x(), pos.y(), pos.z())]]);
+        return true;
+    }
+
+    /**
+     * Recalculates the field if it has been marked dirty.
+     */
+    public void ensureCalculated() {
+        if (dirty) {
+            calculate();
+            dirty = false;
+        }
+    }
+
+    /**
+     * Runs a breadth first search outwards from the centre.
+     * <p>
+     * Enemies move towards the centre, so a neighbour is only added if an enemy could move from it to the current
+     * position.
+     */
+    private void calculate() {
+        Arrays.fill(distances, UNREACHABLE);
+        int centre = indexOf(DefenceField.FIELD_CENTRE.x(), DefenceField.FIELD_CENTRE.y(), DefenceField.FIELD_CENTRE.z());
+        distances[centre] = 0;
+        queue[0] = centre;
+        int head = 0;
+        int tail = 1;
+
+        Vector3i current = new Vector3i();
+        Vector3i neighbour = new Vector3i();
+        while (head < tail) {
+            int index = queue[head++];
+            positionOf(index, current);
+            for (int direction = 0; direction < DIRECTIONS.length; direction++) {
+                neighbour.set(current).add(DIRECTIONS[direction]);
+                int neighbourIndex = indexOf(neighbour.x, neighbour.y, neighbour.z);
+                if (neighbourIndex >= 0
+                        && distances[neighbourIndex] == UNREACHABLE
+                        && plugin.isReachable(current, neighbour)) {
+                    distances[neighbourIndex] = distances[index] + 1;
+                    /* The next step from the neighbour is back the way we came */
+                    directions[neighbourIndex] = (byte) (direction ^ 1);
+                    queue[tail++] = neighbourIndex;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the index of a position in the arrays.
+     * Positions outside of the circle, or too far above or below the centre, are not covered.
+     *
+     * @param x The x position in the world
+     * @param y The y position in the world
+     * @param z The z position in the world
+     * @return The index of the position, or -1 if it's not covered by the field.
+     */
+    private int indexOf(int x, int y, int z) {
+        int localX = x - DefenceField.FIELD_CENTRE.x();
+        int localY = y - DefenceField.FIELD_CENTRE.y();
+        int localZ = z - DefenceField.FIELD_CENTRE.z();
+        if (localX * localX + localZ * localZ > radius * radius || Math.abs(localY) > HEIGHT_RANGE) {
+            return -1;
+        }
+        return ((localX + radius) * sizeY + localY + HEIGHT_RANGE) * sizeZ + localZ + radius;
+    }
+
+    /**
+     * Converts an index in the arrays back into a world position.
+     *
+     * @param index The index to convert
+     * @param dest  The vector to store the position in
+     */
+    private void positionOf(int index, Vector3i dest) {
+        int localZ = index % sizeZ;
+        int localY = (index / sizeZ) % sizeY;
+        int localX = index / (sizeZ * sizeY);
+        dest.set(localX - radius + DefenceField.FIELD_CENTRE.x(),
+                localY - HEIGHT_RANGE + DefenceField.FIELD_CENTRE.y(),
+                localZ - radius + DefenceField.FIELD_CENTRE.z());
+    }
+}
@@ -0,0 +1,95 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.gooeyDefence.movement;
+
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
+import org.terasology.engine.world.block.BlockRegion;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * A small breadth first search used to repair a section of an existing path.
+ * <p>
+ * The search is bounded to a box around the section being repaired, so it stays cheap no matter the size of
+ * the field. If no path can be found within the box, the caller should fall back to a full search.
+ *
+ * @see PathfindingManager
+ */
+public class LocalPathSearch {
+    private final EnemyWalkingPlugin plugin;
+    /**
+     * How far outside the box containing the start and end the search may go.
+     * Given in blocks
+     */
+    private final int margin;
+
+    /**
+     * @param plugin The plugin to check movement between positions with
+     * @param margin How far the search may stray from the start and end. Given in blocks.
+     */
+    public LocalPathSearch(EnemyWalkingPlugin plugin, int margin) {
+        this.plugin = plugin;
+        this.margin = margin;
+    }
+
+    /**
+     * Finds the shortest path between two positions, within the bounds of the search.
+     *
+     * @param start The position to start from
+     * @param end   The position to end at
+     * @return The path, in order from start to end inclusive, or null if none could be found
+     */
+    public List<Vector3i> findPath(Vector3ic start, Vector3ic end) {
+        BlockRegion bounds = new BlockRegion(start).union(end).expand(margin, margin, margin);
+        Map<Vector3i, Vector3i> parents = new HashMap<>();
+        Queue<Vector3i> frontier = new ArrayDeque<>();
+        Vector3i startPos = new Vector3i(start);
+        parents.put(startPos, startPos);
+        frontier.add(startPos);
+
+        while (!frontier.isEmpty()) {
+            Vector3i current = frontier.remove();
+            if (current.equals(end)) {
+                return buildPath(parents, current);
+            }
+            for (Vector3ic move : EnemyWalkingPlugin.MOVES) {
+                Vector3i next = new Vector3i(current).add(move);
+                if (bounds.contains(next)
+                        && !parents.containsKey(next)
+                        && plugin.isReachable(next, current)) {
+                    parents.put(next, current);
+                    frontier.add(next);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Walks back up the parents to build the path.
+     *
+     * @param parents The position each position was reached from
+     * @param end     The last position in the path
+     * @return The path, from start to end
+     */
+    private List<Vector3i> buildPath(Map<Vector3i, Vector3i> parents, Vector3i end) {
+        List<Vector3i> path = new ArrayList<>();
+        Vector3i current = end;
+        path.add(current);
+        Vector3i parent = parents.get(current);
+        while (!parent.equals(current)) {
+            current = parent;
+            path.add(current);
+            parent = parents.get(current);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+}
@@ -16,40 +16,185 @@
 package org.terasology.gooeyDefence.movement;
 
 import org.joml.Vector3f;
-import org.terasology.engine.entitySystem.entity.EntityManager;
+import org.terasology.engine.core.Time;
 import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.entity.lifecycleEvents.BeforeDeactivateComponent;
+import org.terasology.engine.entitySystem.entity.lifecycleEvents.OnActivatedComponent;
 import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
 import org.terasology.engine.entitySystem.systems.RegisterSystem;
 import org.terasology.engine.entitySystem.systems.UpdateSubscriberSystem;
 import org.terasology.engine.logic.location.LocationComponent;
 import org.terasology.engine.registry.In;
+import org.terasology.gestalt.entitysystem.event.ReceiveEvent;
 import org.terasology.gooeyDefence.DefenceField;
+import org.terasology.gooeyDefence.EnemyManager;
+import org.terasology.gooeyDefence.EnemyStateStore;
+import org.terasology.gooeyDefence.components.GooeyComponent;
 import org.terasology.gooeyDefence.movement.components.MovementComponent;
 import org.terasology.gooeyDefence.movement.events.ReachedGoalEvent;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * Handles moving enemies towards a goal, as dictated by their movement component.
+ * <p>
+ * Enemies are moved in bulk over the arrays in the {@link EnemyStateStore}, with their locations written back
+ * as one batch afterwards. All other entities, such as bullets, are kept in their own set as their movement
+ * component is added and removed, and are moved individually through their components.
+ * <p>
+ * Movement is simulated every frame, but location components are only changed in place.
+ * They are saved, and so sent over the network, once every {@link DefenceField#movementSyncInterval}.
+ * Entities that reach their goal are always saved before the event is sent.
+ * <p>
+ * Enemies move at their effective speed, worked out from their status effects once at the start of each tick.
+ * <p>
+ * When {@link DefenceField#parallelMovement} is set, the enemy movement is split into chunks across a fork-join pool.
+ * The events are still sent afterwards on the main thread, in the same order.
  *
  * @see MovementComponent
  * @see ReachedGoalEvent
+ * @see EnemyStateStore
  */
 @RegisterSystem
 public class MovementSystem extends BaseComponentSystem implements UpdateSubscriberSystem {
+    /**
+     * The most enemies a single parallel task will move.
+     * Moving fewer enemies than this is done on the main thread.
+     */
+    private static final int PARALLEL_CHUNK_SIZE = 512;
+
+    @In
+    private EnemyManager enemyManager;
     @In
-    private EntityManager entityManager;
+    private Time time;
+    /**
+     * The entities that reached their goal this frame.
+     * Collected before any events are sent, as handling the events may move enemies between slots.
+     */
+    private final List<EntityRef> reachedEntities = new ArrayList<>();
+    /**
+     * The non-enemy entities with a movement and location component.
+     */
+    private final Set<EntityRef> movingEntities = new LinkedHashSet<>();
+    /**
+     * The non-enemy entities that have moved since their location was last saved.
+     */
+    private final Set<EntityRef> dirtyEntities = new LinkedHashSet<>();
+    /**
+     * Reused while moving non-enemy entities.
+     */
+    private final Vector3f positionBuffer = new Vector3f();
+    private final Vector3f headingBuffer = new Vector3f();
+    /**
+     * How long since the locations were last saved.
+     * In seconds.
+     */
+    private float timeSinceSync;
+
+    /**
+     * Starts tracking a non-enemy entity once it can move.
+     * Enemies are moved through the enemy store instead.
+     * <p>
+     * Filters on {@link MovementComponent} and {@link LocationComponent}
+     *
+     * @see OnActivatedComponent
+     */
+    @ReceiveEvent(components = {MovementComponent.class, LocationComponent.class})
+    public void onMovementActivated(OnActivatedComponent event, EntityRef entity) {
+        if (!entity.hasComponent(GooeyComponent.class)) {
+            movingEntities.add(entity);
+        }
+    }
+
+    /**
+     * Stops tracking an entity once it can no longer move.
+     * <p>
+     * Filters on {@link MovementComponent} and {@link LocationComponent}
+     *
+     * @see BeforeDeactivateComponent
+     */
+    @ReceiveEvent(components = {MovementComponent.class, LocationComponent.class})
+    public void onMovementDeactivated(BeforeDeactivateComponent event, EntityRef entity) {
+        movingEntities.remove(entity);
+        dirtyEntities.remove(entity);
+    }
 
     @Override
     public void update(float delta) {
         if (DefenceField.fieldActivated) {
-            for (EntityRef entity : entityManager.getEntitiesWith(MovementComponent.class, LocationComponent.class)) {
-                moveEntity(entity, delta);
+            timeSinceSync += delta;
+            boolean sync = timeSinceSync >= DefenceField.movementSyncInterval;
+            if (sync) {
+                timeSinceSync = 0;
+            }
+            moveEnemies(delta, sync);
+            moveEntities(delta, sync);
+        }
+    }
+
+    /**
+     * Moves all the enemies towards their goals using the enemy store.
+     * <p>
+     * The movement is calculated for every enemy first, then the positions are written back to the components.
+     * Finally, the enemies that reached their goal are sent an event, in slot order.
+     *
+     * @param delta The time the last frame took in seconds.
+     * @param sync  True if the moved enemies should have their locations saved
+     */
+    private void moveEnemies(float delta, boolean sync) {
+        EnemyStateStore store = enemyManager.getEnemyStore();
+        store.updateEffectiveSpeeds(0, store.size(), time.getGameTimeInMs());
+        if (DefenceField.parallelMovement && store.size() > PARALLEL_CHUNK_SIZE) {
+            ForkJoinPool.commonPool().invoke(new IntegrateTask(store, 0, store.size(), delta));
+        } else {
+            store.integrate(0, store.size(), delta);
+        }
+        enemyManager.writeEnemyPositions(sync);
+
+        for (int slot = 0; slot < store.size(); slot++) {
+            if (store.hasReachedGoal(slot)) {
+                enemyManager.saveEnemyLocation(slot);
+                reachedEntities.add(store.getEntity(slot));
+            }
+        }
+        sendReachedGoalEvents();
+    }
+
+    /**
+     * Moves all the non-enemy entities towards their goals.
+     * <p>
+     * The movement is calculated for every entity first, then the changed locations are saved if needed.
+     * Finally, the entities that reached their goal are sent an event.
+     *
+     * @param delta The time the last frame took in seconds.
+     * @param sync  True if the moved entities should have their locations saved
+     */
+    private void moveEntities(float delta, boolean sync) {
+        for (EntityRef entity : movingEntities) {
+            moveEntity(entity, delta);
+        }
+        if (sync) {
+            for (EntityRef entity : dirtyEntities) {
+                saveLocation(entity);
             }
+            dirtyEntities.clear();
         }
+        for (EntityRef entity : reachedEntities) {
+            if (dirtyEntities.remove(entity)) {
+                saveLocation(entity);
+            }
+        }
+        sendReachedGoalEvents();
     }
 
     /**
      * Moves an entity towards the goal as set out in the movement component.
-     * Also sends an event when the goal is reached.
+     * If the goal has been reached, the entity is instead queued to have an event sent.
      *
      * @param entity The entity to move
      * @param delta  The time the last frame took in seconds.
@@ -58,11 +203,38 @@ public class MovementSystem extends BaseComponentSystem implements UpdateSubscri
         MovementComponent movementComponent = entity.getComponent(MovementComponent.class);
         LocationComponent locationComponent = entity.getComponent(LocationComponent.class);
 
-        float distSqr = locationComponent.getWorldPosition(new Vector3f()).distanceSquared(movementComponent.goal);
+        float distSqr = locationComponent.getWorldPosition(positionBuffer).distanceSquared(movementComponent.goal);
         if (distSqr < movementComponent.reachedDistance) {
-            entityReachedGoal(entity);
+            reachedEntities.add(entity);
         } else {
-            moveEntityTowardsGoal(entity, delta);
+            moveEntityTowardsGoal(movementComponent, locationComponent, delta);
+            dirtyEntities.add(entity);
+        }
+    }
+
+    /**
+     * Sends an event to every entity that reached it's goal, then clears the list.
+     */
+    private void sendReachedGoalEvents() {
+        for (EntityRef entity : reachedEntities) {
+            if (entity.exists()) {
+                entityReachedGoal(entity);
+            }
+        }
+        reachedEntities.clear();
+    }
+
+    /**
+     * Saves the location component of an entity, if it still exists.
+     *
+     * @param entity The entity to save
+     */
+    private void saveLocation(EntityRef entity) {
+        if (entity.exists()) {
+            LocationComponent locationComponent = entity.getComponent(LocationComponent.class);
+            if (locationComponent != null) {
+                entity.saveComponent(locationComponent);
+            }
         }
     }
 
@@ -83,24 +255,52 @@ public class MovementSystem extends BaseComponentSystem implements UpdateSubscri
 
     /**
      * Moves an entity towards the goal.
-     * Does this by updating the location component on the entity.
+     * Does this by updating the location component in place. The component is not saved.
      *
-     * @param entity The entity to move
-     * @param delta  The time the last frame took in seconds.
+     * @param movementComponent The movement component of the entity
+     * @param locationComponent The location component of the entity
+     * @param delta             The time the last frame took in seconds.
      */
-    private void moveEntityTowardsGoal(EntityRef entity, float delta) {
-        MovementComponent movementComponent = entity.getComponent(MovementComponent.class);
-        LocationComponent locationComponent = entity.getComponent(LocationComponent.class);
-
-        Vector3f target = new Vector3f(movementComponent.goal)
+    private void moveEntityTowardsGoal(MovementComponent movementComponent, LocationComponent locationComponent, float delta) {
+        Vector3f position = locationComponent.getWorldPosition(positionBuffer);
+        Vector3f target = headingBuffer.set(movementComponent.goal)
                 /* Calculate required heading */
-                .sub(locationComponent.getWorldPosition(new Vector3f()))
+                .sub(position)
                 .normalize()
                 /* Scale to the speed */
                 .mul(movementComponent.speed * delta);
         /* Move the entity */
-        locationComponent.setWorldPosition(locationComponent.getWorldPosition(new Vector3f()).add(target));
-        entity.saveComponent(locationComponent);
+        locationComponent.setWorldPosition(position.add(target));
+    }
+
+    /**
+     * Moves a range of enemies in the store, splitting the range in half until each part is small enough.
+     *
+     * @see EnemyStateStore#integrate(int, int, float)
+     */
+    private static final class IntegrateTask extends RecursiveAction {
+        private final EnemyStateStore store;
+        private final int fromSlot;
+        private final int toSlot;
+        private final float delta;
+
+        private IntegrateTask(EnemyStateStore store, int fromSlot, int toSlot, float delta) {
+            this.store = store;
+            this.fromSlot = fromSlot;
+            this.toSlot = toSlot;
+            this.delta = delta;
+        }
+
+        @Override
+        protected void compute() {
+            if (toSlot - fromSlot <= PARALLEL_CHUNK_SIZE) {
+                store.integrate(fromSlot, toSlot, delta);
+            } else {
+                int middle = (fromSlot + toSlot) >>> 1;
+                invokeAll(new IntegrateTask(store, fromSlot, middle, delta),
+                        new IntegrateTask(store, middle, toSlot, delta));
+            }
+        }
     }
 
 }
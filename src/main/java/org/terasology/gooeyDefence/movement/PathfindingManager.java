@@ -18,15 +18,16 @@ package org.terasology.gooeyDefence.movement;
 import org.joml.RoundingMode;
 import org.joml.Vector3f;
 import org.joml.Vector3i;
+import org.joml.Vector3ic;
 import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
 import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.entitySystem.systems.UpdateSubscriberSystem;
 import org.terasology.engine.logic.location.LocationComponent;
 import org.terasology.engine.registry.In;
 import org.terasology.engine.registry.Share;
 import org.terasology.engine.world.OnChangedBlock;
 import org.terasology.engine.world.WorldProvider;
-import org.terasology.engine.world.block.entity.placement.PlaceBlocks;
 import org.terasology.flexiblepathfinding.JPSConfig;
 import org.terasology.flexiblepathfinding.PathfinderSystem;
 import org.terasology.gestalt.entitysystem.event.ReceiveEvent;
@@ -36,6 +37,7 @@ import org.terasology.gooeyDefence.events.OnEntrancePathCalculated;
 import org.terasology.gooeyDefence.events.OnFieldActivated;
 import org.terasology.gooeyDefence.movement.components.BlankPathComponent;
 import org.terasology.gooeyDefence.movement.components.CustomPathComponent;
+import org.terasology.gooeyDefence.movement.components.FlowPathComponent;
 import org.terasology.gooeyDefence.movement.events.RepathEnemyRequest;
 
 import java.util.ArrayList;
@@ -49,18 +51,27 @@ import java.util.function.Consumer;
  * Handles calculation and storage of paths
  * <p>
  * Does not move any entities, this is delegated to the {@link MovementSystem} & {@link EnemyManager}
+ * <p>
+ * Full searches for the entrance paths are coalesced. Entrances are marked as dirty, and then each dirty
+ * entrance is searched at most once every {@link DefenceField#pathRecalculateInterval}.
+ * Each search is given a generation, and only the result of the latest search for an entrance is used.
  *
  * @see MovementSystem
  * @see EnemyManager
  */
 @Share(PathfindingManager.class)
 @RegisterSystem
-public class PathfindingManager extends BaseComponentSystem {
+public class PathfindingManager extends BaseComponentSystem implements UpdateSubscriberSystem {
     /**
      * How long the pathfinding system should try and find a path for before giving up.
      * In seconds.
      */
     private static final float PATHFINDING_TIMEOUT = 10.f;
+    /**
+     * How many steps either side of a broken section of path are re-searched when repairing it.
+     * Also how far the repair search may stray from that section.
+     */
+    private static final int REPAIR_MARGIN = 8;
     /**
      * Any entities that require re-pathing.
      */
@@ -69,14 +80,56 @@ public class PathfindingManager extends BaseComponentSystem {
     private PathfinderSystem pathfinderSystem;
     @In
     private WorldProvider worldProvider;
+    @In
+    private EnemyManager enemyManager;
+    /**
+     * The paths from each of the entrances to the shrine, along with their step index.
+     * Null if the path has not been calculated yet.
+     */
+    private List<EntrancePath> paths;
+    /**
+     * The version given to the last path made.
+     */
+    private int pathVersion;
+    /**
+     * The distance to the shrine from every position on the field.
+     * Used to re-path enemies that are not on an entrance path.
+     */
+    private FlowField flowField;
+    /**
+     * Used to repair small broken sections of the entrance paths.
+     */
+    private LocalPathSearch localPathSearch;
+    private EnemyWalkingPlugin walkingPlugin;
+    /**
+     * Entrances that need a full search at the next opportunity.
+     */
+    private boolean[] dirtyEntrances;
     /**
-     * The paths from each of the entrances to the shrine
+     * Entrances that have a full search in progress.
      */
-    private List<List<Vector3i>> paths;
+    private boolean[] searchingEntrances;
+    /**
+     * The generation of the latest search for each entrance.
+     * Results from any earlier generation are stale and are dropped.
+     */
+    private int[] generations;
+    /**
+     * How long since dirty entrances were last searched.
+     * In seconds.
+     */
+    private float timeSinceSearch;
 
     @Override
     public void preBegin() {
         paths = new ArrayList<>(Collections.nCopies(DefenceField.entranceCount, null));
+        dirtyEntrances = new boolean[DefenceField.entranceCount];
+        searchingEntrances = new boolean[DefenceField.entranceCount];
+        generations = new int[DefenceField.entranceCount];
+        //TODO: Replace width and height with values from enemy.
+        walkingPlugin = new EnemyWalkingPlugin(worldProvider, 0.5f, 0.5f);
+        flowField = new FlowField(walkingPlugin, DefenceField.outerRingSize);
+        localPathSearch = new LocalPathSearch(walkingPlugin, REPAIR_MARGIN);
     }
 
     /**
@@ -88,34 +141,64 @@ public class PathfindingManager extends BaseComponentSystem {
      */
     @ReceiveEvent
     public void onFieldActivated(OnFieldActivated event, EntityRef entity) {
+        flowField.markDirty();
         for (int id = 0; id < DefenceField.entranceCount; id++) {
+            dirtyEntrances[id] = false;
             event.beginTask();
             calculatePath(id, event::finishTask);
         }
     }
 
-
     /**
-     * Update path on a block placed.
-     * <p>
-     * This is only run when the field is activated to avoid the reset triggering it.
+     * Recalculates the flow field if the field has changed, so that reading enemy progress never triggers a search.
+     * Also starts a full search for every dirty entrance, if enough time has passed since the last searches.
      */
-    @ReceiveEvent
-    public void onPlaceBlocks(PlaceBlocks event, EntityRef entity) {
+    @Override
+    public void update(float delta) {
         if (DefenceField.fieldActivated) {
-            calculatePaths();
+            flowField.ensureCalculated();
+        }
+        timeSinceSearch += delta;
+        if (timeSinceSearch < DefenceField.pathRecalculateInterval) {
+            return;
+        }
+        timeSinceSearch = 0;
+        for (int id = 0; id < dirtyEntrances.length; id++) {
+            if (dirtyEntrances[id]) {
+                dirtyEntrances[id] = false;
+                calculatePath(id, null);
+            }
         }
     }
 
     /**
-     * Update path on a block removed.
+     * Marks an entrance as needing a full search.
+     * The search will be started by the next update, once the interval has passed.
+     * Marking an entrance multiple times before then still only results in a single search.
+     *
+     * @param id The entrance to search from
+     */
+    public void requestPathCalculation(int id) {
+        dirtyEntrances[id] = true;
+    }
+
+
+    /**
+     * Update the paths on a block being placed or removed.
+     * <p>
+     * Changes outside of the field, or away from all of the paths are ignored.
+     * Paths that have been broken by the change are repaired locally where possible.
      * <p>
      * This is only run when the field is activated to avoid the reset triggering it.
      */
     @ReceiveEvent
     public void onChangedBlock(OnChangedBlock event, EntityRef entity) {
-        if (DefenceField.fieldActivated) {
-            calculatePaths();
+        Vector3ic position = event.getBlockPosition();
+        if (DefenceField.fieldActivated && isInField(position)) {
+            flowField.markDirty();
+            for (int id = 0; id < DefenceField.entranceCount; id++) {
+                updatePath(id, position);
+            }
         }
     }
 
@@ -123,38 +206,164 @@ public class PathfindingManager extends BaseComponentSystem {
      * Called to request an enemy be re-pathed.
      * Prevents the path on an enemy being set multiple times
      * <p>
+     * If the enemy can reach the shrine using the flow field, it is set to follow that straight away.
+     * Otherwise a path is searched for as a fallback.
+     * <p>
      * Filters on {@link LocationComponent}
      *
      * @see RepathEnemyRequest
+     * @see FlowField
      */
     @ReceiveEvent
     public void onRepathEnemyRequest(RepathEnemyRequest event, EntityRef entity, LocationComponent locationComponent) {
+        Vector3i start = new Vector3i(locationComponent.getWorldPosition(new Vector3f()), RoundingMode.FLOOR);
+        if (flowField.isReachable(start)) {
+            queuedEnemies.remove(entity);
+            entity.addComponent(new FlowPathComponent(flowField, start));
+            entity.removeComponent(BlankPathComponent.class);
+            enemyManager.refreshEnemyState(entity);
+            return;
+        }
         queuedEnemies.add(entity);
-        calculatePath(buildJpsConfig(new Vector3i(locationComponent.getWorldPosition(new Vector3f()), RoundingMode.FLOOR)),
+        calculatePath(buildJpsConfig(start),
                 path -> {
                     if (!path.isEmpty() && queuedEnemies.contains(entity)) {
                         CustomPathComponent customPathComponent = new CustomPathComponent(path);
                         entity.addComponent(customPathComponent);
                         entity.removeComponent(BlankPathComponent.class);
                         queuedEnemies.remove(entity);
+                        enemyManager.refreshEnemyState(entity);
                     }
                 });
     }
 
+    /**
+     * Checks if a block change could affect any path through the field.
+     *
+     * @param position The position of the block
+     * @return True if the position is within, or on the edge of the field
+     */
+    private boolean isInField(Vector3ic position) {
+        int x = position.x() - DefenceField.FIELD_CENTRE.x();
+        int z = position.z() - DefenceField.FIELD_CENTRE.z();
+        int range = DefenceField.outerRingSize + 1;
+        return x * x + z * z <= range * range;
+    }
+
+    /**
+     * Updates a single entrance path after a block has changed.
+     * <p>
+     * If the change is not on or next to the path, then the path is left alone.
+     * If it is, then the steps around the change are checked to see if they can still be walked.
+     * Any broken section is re-searched locally, falling back to a full search if that fails.
+     *
+     * @param id       The entrance of the path to update
+     * @param position The position of the block that changed
+     */
+    private void updatePath(int id, Vector3ic position) {
+        List<Vector3i> path = getPath(id);
+        if (path == null) {
+            /* The path is still being calculated */
+            return;
+        }
+        if (path.isEmpty() || dirtyEntrances[id] || searchingEntrances[id]) {
+            /* Either there was no path before, so the change may have opened one up,
+             * or a full search is already pending and would overwrite any repair.
+             * Both need a fresh full search that includes this change. */
+            requestPathCalculation(id);
+            return;
+        }
+
+        /* Find the lowest and highest steps whose move into the next step has been broken */
+        int lowestBroken = -1;
+        int highestBroken = -1;
+        for (int step = 0; step < path.size(); step++) {
+            if (isNextTo(path.get(step), position)) {
+                for (int from = Math.max(1, step); from <= Math.min(step + 1, path.size() - 1); from++) {
+                    if (!walkingPlugin.isReachable(path.get(from - 1), path.get(from))) {
+                        lowestBroken = lowestBroken < 0 ? from : Math.min(lowestBroken, from);
+                        highestBroken = Math.max(highestBroken, from);
+                    }
+                }
+            }
+        }
+        if (lowestBroken < 0) {
+            return;
+        }
+        if (!repairPath(id, path, lowestBroken - 1, highestBroken)) {
+            requestPathCalculation(id);
+        }
+    }
+
+    /**
+     * Re-searches a section of path, and splices the result in place of the old section.
+     *
+     * @param id   The entrance of the path
+     * @param path The path to repair
+     * @param low  The lowest step in the broken section
+     * @param high The highest step in the broken section
+     * @return True if the path was repaired, false if a full search is needed.
+     */
+    private boolean repairPath(int id, List<Vector3i> path, int low, int high) {
+        int end = Math.max(0, low - REPAIR_MARGIN);
+        int start = Math.min(path.size() - 1, high + REPAIR_MARGIN);
+        List<Vector3i> section = localPathSearch.findPath(path.get(start), path.get(end));
+        if (section == null) {
+            return false;
+        }
+        /* Paths run from the centre outwards, so the section needs reversing */
+        Collections.reverse(section);
+        List<Vector3i> newPath = new ArrayList<>(path.size() + section.size());
+        newPath.addAll(path.subList(0, end));
+        newPath.addAll(section);
+        newPath.addAll(path.subList(start + 1, path.size()));
+        setPath(id, newPath);
+        return true;
+    }
+
+    /**
+     * @param step     A step on a path
+     * @param position The position to check
+     * @return True if the position is the step, or any of the 26 blocks around it
+     */
+    private boolean isNextTo(Vector3ic step, Vector3ic position) {
+        return Math.abs(step.x() - position.x()) <= 1
+                && Math.abs(step.y() - position.y()) <= 1
+                && Math.abs(step.z() - position.z()) <= 1;
+    }
+
+    /**
+     * Stores a new path for an entrance, notifying other systems if it has changed.
+     *
+     * @param id   The entrance the path is from
+     * @param path The new path
+     */
+    private void setPath(int id, List<Vector3i> path) {
+        List<Vector3i> oldPath = getPath(id);
+        paths.set(id, new EntrancePath(path, ++pathVersion));
+        if (!path.equals(oldPath)) {
+            DefenceField.getShrineEntity().send(new OnEntrancePathCalculated(id, path));
+        }
+    }
+
     /**
      * Calculate the path from an entrance to the centre.
      * This callback is not invoked with the path as an argument.
+     * <p>
+     * Any search already in progress for the entrance becomes stale, and it's result will be dropped.
+     * The callback is still invoked for stale searches.
      *
      * @param id       The entrance to calculate from
      * @param callback A callback to be invoked after the path calculation has finished.
      */
     private void calculatePath(int id, Runnable callback) {
+        int generation = ++generations[id];
+        searchingEntrances[id] = true;
         calculatePath(buildJpsConfig(DefenceField.entrancePos(id)),
                 (path) -> {
-                    List<Vector3i> oldPath = paths.get(id);
-                    paths.set(id, path);
-                    if (!path.equals(oldPath)) {
-                        DefenceField.getShrineEntity().send(new OnEntrancePathCalculated(id, path));
+                    if (generation == generations[id]) {
+                        searchingEntrances[id] = false;
+                        setPath(id, path);
                     }
                     if (callback != null) {
                         callback.run();
@@ -197,19 +406,21 @@ public class PathfindingManager extends BaseComponentSystem {
     }
 
     /**
-     * Calculate paths from all the entrances to the centre.
+     * @return The flow field from every position on the field to the centre
      */
-    private void calculatePaths() {
-        for (int id = 0; id < DefenceField.entranceCount; id++) {
-            calculatePath(id, null);
-        }
+    public FlowField getFlowField() {
+        return flowField;
     }
 
     /**
      * @return All paths from entrance to centre
      */
     public List<List<Vector3i>> getPaths() {
-        return paths;
+        List<List<Vector3i>> result = new ArrayList<>(paths.size());
+        for (int id = 0; id < paths.size(); id++) {
+            result.add(getPath(id));
+        }
+        return result;
     }
 
     /**
@@ -222,6 +433,30 @@ public class PathfindingManager extends BaseComponentSystem {
      * @return The given path, or null if it doesn't exist yet.
      */
     public List<Vector3i> getPath(int pathID) {
+        EntrancePath path = paths.get(pathID);
+        return path == null ? null : path.getPath();
+    }
+
+    /**
+     * Get a path, along with it's packed positions and rotations.
+     *
+     * @param pathID Which entrance the path should come from
+     * @return The given path, or null if it doesn't exist yet.
+     */
+    public EntrancePath getEntrancePath(int pathID) {
         return paths.get(pathID);
     }
+
+    /**
+     * Finds the step of a position along a path.
+     * This is a constant time lookup, rather than a search of the path.
+     *
+     * @param pathID   Which entrance the path comes from
+     * @param position The position to look for
+     * @return The step of the position, or -1 if it isn't on the path or the path doesn't exist yet.
+     */
+    public int getStep(int pathID, Vector3ic position) {
+        EntrancePath path = paths.get(pathID);
+        return path == null ? -1 : path.getStep(position);
+    }
 }
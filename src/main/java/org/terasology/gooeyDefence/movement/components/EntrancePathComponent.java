@@ -2,28 +2,40 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.gooeyDefence.movement.components;
 
+import org.joml.Quaternionf;
 import org.joml.Vector3f;
-import org.joml.Vector3i;
+import org.terasology.gooeyDefence.movement.EntrancePath;
 import org.terasology.gooeyDefence.movement.PathfindingManager;
 
-import java.util.List;
-
 /**
  * Moves the enemy along a path from an entrance to the shrine.
  * <p>
  * Doesn't store the path internally to reduce on memory, instead stores a
  * reference to the PathfindingManager that holds the path.
  * This does result in needing to re-set the pathManager every time the game is loaded/created.
+ * <p>
+ * The path is referenced by the entrance id and the version of the path.
+ * The version is not saved, as versions are only unique within a session. After loading, the saved step may index
+ * a different path, so the version is unknown until the enemy is moved onto a newly calculated path.
+ * Moving to the next step reads from the packed path, and doesn't allocate.
  *
  * @see PathfindingManager
+ * @see EntrancePath
  * @see CustomPathComponent
  * @see PathComponent
  */
 public class EntrancePathComponent implements PathComponent<EntrancePathComponent> {
+    /**
+     * The version of an enemy whose path isn't known, such as after loading. It never matches a real path.
+     */
+    public static final int UNKNOWN_VERSION = -1;
+
     private int step;
     private int entranceId;
+    private transient int version = UNKNOWN_VERSION;
     private Vector3f goal = new Vector3f();
     private transient PathfindingManager pathManager;
+    private transient EntrancePath path;
 
     /**
      * Empty constructor for deserialisation.
@@ -42,28 +54,47 @@ public class EntrancePathComponent implements PathComponent<EntrancePathComponen
         this.entranceId = entranceId;
         this.pathManager = pathManager;
         /* The startStep given must be in the range of the path */
-        if (startStep < 0 || startStep > pathManager.getPath(entranceId).size() - 1) {
+        if (startStep < 0 || startStep > getPath().size() - 1) {
             throw new IllegalArgumentException();
         }
+        version = path.getVersion();
         step = startStep;
-        goal = new Vector3f(pathManager.getPath(entranceId).get(step));
+        path.getPosition(step, goal);
     }
 
     public EntrancePathComponent(int entranceId, PathfindingManager pathManager) {
         this.entranceId = entranceId;
         this.pathManager = pathManager;
-        step = pathManager.getPath(entranceId).size() - 1;
-        goal = new Vector3f(pathManager.getPath(entranceId).get(step));
+        step = getPath().size() - 1;
+        version = path.getVersion();
+        path.getPosition(step, goal);
     }
 
     /**
      * Set the PathfindingManager the paths are stored in.
      * The field storing it cannot be serialised so it must be manually set.
+     * <p>
+     * The path the step indexes into is no longer known, so the version is reset to {@link #UNKNOWN_VERSION}.
      *
      * @param pathManager The new path manager to set
      */
     public void setPathManager(PathfindingManager pathManager) {
         this.pathManager = pathManager;
+        this.path = null;
+        this.version = UNKNOWN_VERSION;
+    }
+
+    /**
+     * Gets the path being followed, fetching it from the manager if it's not been fetched yet.
+     * Fetching the path doesn't change the version, as the step may have been for a different path.
+     *
+     * @return The path being followed
+     */
+    private EntrancePath getPath() {
+        if (path == null) {
+            path = pathManager.getEntrancePath(entranceId);
+        }
+        return path;
     }
 
     @Override
@@ -76,13 +107,26 @@ public class EntrancePathComponent implements PathComponent<EntrancePathComponen
         return goal;
     }
 
+    /**
+     * Moves the goal to the next step.
+     * The goal vector is updated in place, rather than replaced.
+     */
     @Override
     public void nextStep() {
-        List<Vector3i> path = pathManager.getPath(entranceId);
         step--;
-        step = Math.min(Math.max(0, step), path.size() - 1);
-        goal = new Vector3f(path.get(step));
+        step = Math.min(Math.max(0, step), getPath().size() - 1);
+        path.getPosition(step, goal);
+    }
 
+    /**
+     * Gets the rotation the enemy should face after moving to the current step.
+     *
+     * @param dest The quaternion to store the rotation in
+     * @return True if the enemy should turn, false if it's rotation should be left as is.
+     * @see EntrancePath#getRotation(int, Quaternionf)
+     */
+    public boolean getFacing(Quaternionf dest) {
+        return getPath().getRotation(step, dest);
     }
 
     /**
@@ -92,11 +136,20 @@ public class EntrancePathComponent implements PathComponent<EntrancePathComponen
         return entranceId;
     }
 
+    /**
+     * @return the version of the entrance path this component is following, or {@link #UNKNOWN_VERSION}
+     */
+    public int getVersion() {
+        return version;
+    }
+
     @Override
     public void copyFrom(EntrancePathComponent other) {
         this.step = other.step;
         this.entranceId = other.entranceId;
+        this.version = other.version;
         this.goal.set(other.goal);
         this.pathManager = other.pathManager;
+        this.path = other.path;
     }
 }
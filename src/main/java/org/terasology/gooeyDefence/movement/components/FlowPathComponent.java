@@ -0,0 +1,112 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.gooeyDefence.movement.components;
+
+import org.joml.RoundingMode;
+import org.joml.Vector3f;
+import org.joml.Vector3i;
+import org.terasology.gooeyDefence.movement.FlowField;
+import org.terasology.gooeyDefence.movement.PathfindingManager;
+
+/**
+ * Moves the enemy along the shared flow field towards the shrine.
+ * <p>
+ * Used in place of a {@link CustomPathComponent} for enemies that are not on an entrance path.
+ * The step is the enemy's distance to the shrine along the field.
+ * <p>
+ * Like {@link EntrancePathComponent}, the flow field is not stored in the component, so it needs to be re-set
+ * every time the game is loaded/created.
+ *
+ * @see FlowField
+ * @see PathfindingManager
+ * @see PathComponent
+ */
+public class FlowPathComponent implements PathComponent<FlowPathComponent> {
+    private int step;
+    private Vector3f goal = new Vector3f();
+    private transient FlowField flowField;
+    /**
+     * Set when the goal could not be moved along the field, so the enemy needs a new path.
+     */
+    private transient boolean lost;
+    /**
+     * Reused while stepping along the field.
+     */
+    private transient Vector3i current = new Vector3i();
+    private transient Vector3i next = new Vector3i();
+
+    /**
+     * Empty constructor for deserialisation.
+     */
+    private FlowPathComponent() {
+    }
+
+    /**
+     * Create a new flow path component starting at the given position.
+     *
+     * @param flowField The flow field to follow
+     * @param start     The position to start from. This must be reachable in the flow field.
+     */
+    public FlowPathComponent(FlowField flowField, Vector3i start) {
+        this.flowField = flowField;
+        if (!flowField.isReachable(start)) {
+            throw new IllegalArgumentException();
+        }
+        step = flowField.getDistance(start);
+        goal.set(start);
+    }
+
+    /**
+     * Set the flow field to follow.
+     * The field storing it cannot be serialised so it must be manually set.
+     *
+     * @param flowField The new flow field to set
+     */
+    public void setFlowField(FlowField flowField) {
+        this.flowField = flowField;
+    }
+
+    @Override
+    public int getStep() {
+        return step;
+    }
+
+    @Override
+    public Vector3f getGoal() {
+        return goal;
+    }
+
+    /**
+     * Moves the goal one step along the flow field.
+     * <p>
+     * If the field has changed so that the current goal can no longer reach the shrine, the goal is left in place
+     * and the path is marked as lost. The enemy then needs to be re-pathed from where it is.
+     *
+     * @see #isLost()
+     */
+    @Override
+    public void nextStep() {
+        if (flowField.getNextStep(current.set(goal, RoundingMode.FLOOR), next)) {
+            step = flowField.getDistance(next);
+            goal.set(next);
+            lost = false;
+        } else {
+            lost = true;
+        }
+    }
+
+    /**
+     * @return True if the last step failed because the goal can no longer reach the shrine along the field
+     */
+    public boolean isLost() {
+        return lost;
+    }
+
+    @Override
+    public void copyFrom(FlowPathComponent other) {
+        this.step = other.step;
+        this.goal.set(other.goal);
+        this.flowField = other.flowField;
+        this.lost = other.lost;
+    }
+}
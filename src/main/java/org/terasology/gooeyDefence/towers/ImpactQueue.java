@@ -0,0 +1,152 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.gooeyDefence.towers;
+
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.gooeyDefence.EnemyManager;
+import org.terasology.gooeyDefence.EnemyStateStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Collects the splash impacts that land during a tick, so that they can be resolved together.
+ * <p>
+ * Impacts whose splashes overlap are grouped, and a single range query is made covering the whole group.
+ * The enemies hit by each impact are then picked out of that query by their squared distance in the store.
+ *
+ * @see TowerManager
+ */
+public class ImpactQueue {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final List<EntityRef> groupEnemies = new ArrayList<>();
+    private final List<EntityRef> impactEnemies = new ArrayList<>();
+    private final Vector3f groupCentre = new Vector3f();
+    private EntityRef[] targeters = new EntityRef[INITIAL_CAPACITY];
+    private float[] centreX = new float[INITIAL_CAPACITY];
+    private float[] centreY = new float[INITIAL_CAPACITY];
+    private float[] centreZ = new float[INITIAL_CAPACITY];
+    private float[] radius = new float[INITIAL_CAPACITY];
+    private boolean[] resolved = new boolean[INITIAL_CAPACITY];
+    private int[] group = new int[INITIAL_CAPACITY];
+    private int count;
+
+    /**
+     * Adds an impact to be resolved with the rest of the tick's impacts.
+     *
+     * @param targeter The targeter that fired the shot
+     * @param centre   Where the shot landed
+     * @param range    The radius of the splash
+     */
+    public void add(EntityRef targeter, Vector3fc centre, float range) {
+        if (count == targeters.length) {
+            int newCapacity = count * 2;
+            targeters = Arrays.copyOf(targeters, newCapacity);
+            centreX = Arrays.copyOf(centreX, newCapacity);
+            centreY = Arrays.copyOf(centreY, newCapacity);
+            centreZ = Arrays.copyOf(centreZ, newCapacity);
+            radius = Arrays.copyOf(radius, newCapacity);
+            resolved = Arrays.copyOf(resolved, newCapacity);
+            group = Arrays.copyOf(group, newCapacity);
+        }
+        targeters[count] = targeter;
+        centreX[count] = centre.x();
+        centreY[count] = centre.y();
+        centreZ[count] = centre.z();
+        radius[count] = range;
+        resolved[count] = false;
+        count++;
+    }
+
+    /**
+     * @return True if there are no impacts waiting to be resolved
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Removes all the waiting impacts without resolving them.
+     */
+    public void clear() {
+        Arrays.fill(targeters, 0, count, null);
+        count = 0;
+    }
+
+    /**
+     * Finds the enemies hit by every waiting impact, then empties the queue.
+     * <p>
+     * The consumer is called once per impact, with overlapping impacts called one after another.
+     * The list of enemies given to it is reused, and so should not be kept.
+     * Enemies destroyed by an earlier impact are left out of the later ones.
+     *
+     * @param enemyManager The enemy manager to find the enemies with
+     * @param consumer     Called with the targeter and the enemies hit for each impact
+     */
+    public void resolve(EnemyManager enemyManager, BiConsumer<EntityRef, List<EntityRef>> consumer) {
+        EnemyStateStore store = enemyManager.getEnemyStore();
+        for (int first = 0; first < count; first++) {
+            if (resolved[first]) {
+                continue;
+            }
+            int groupSize = gatherGroup(first);
+            float groupRadius = 0;
+            for (int i = 0; i < groupSize; i++) {
+                groupRadius = Math.max(groupRadius, distanceTo(first, group[i]) + radius[group[i]]);
+            }
+            groupCentre.set(centreX[first], centreY[first], centreZ[first]);
+            enemyManager.getEnemiesInRange(groupCentre, groupRadius, groupEnemies);
+
+            for (int i = 0; i < groupSize; i++) {
+                int impact = group[i];
+                float rangeSqr = radius[impact] * radius[impact];
+                impactEnemies.clear();
+                for (EntityRef enemy : groupEnemies) {
+                    int slot = store.getSlot(enemy);
+                    if (slot < 0) {
+                        continue;
+                    }
+                    float dx = store.getPositionX(slot) - centreX[impact];
+                    float dy = store.getPositionY(slot) - centreY[impact];
+                    float dz = store.getPositionZ(slot) - centreZ[impact];
+                    if (dx * dx + dy * dy + dz * dz <= rangeSqr) {
+                        impactEnemies.add(enemy);
+                    }
+                }
+                consumer.accept(targeters[impact], impactEnemies);
+            }
+        }
+        groupEnemies.clear();
+        impactEnemies.clear();
+        clear();
+    }
+
+    /**
+     * Marks every unresolved impact that overlaps the first impact as part of it's group.
+     *
+     * @param first The impact to group around
+     * @return The number of impacts in the group, including the first
+     */
+    private int gatherGroup(int first) {
+        int groupSize = 0;
+        for (int other = first; other < count; other++) {
+            if (!resolved[other] && distanceTo(first, other) <= radius[first] + radius[other]) {
+                resolved[other] = true;
+                group[groupSize++] = other;
+            }
+        }
+        return groupSize;
+    }
+
+    private float distanceTo(int from, int to) {
+        float dx = centreX[to] - centreX[from];
+        float dy = centreY[to] - centreY[from];
+        float dz = centreZ[to] - centreZ[from];
+        return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+}
@@ -0,0 +1,103 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.gooeyDefence.towers;
+
+import org.terasology.engine.entitySystem.entity.EntityRef;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Tracks which enemies a targeter hit with it's last shot.
+ * <p>
+ * Each shot is given a new generation, and every enemy hit is stamped with it. Enemies that are hit and weren't
+ * stamped by the previous shot are new targets. Enemies still holding an old stamp at the end of the shot are no
+ * longer targeted, and are removed in a single pass. No sets are created or compared between shots.
+ *
+ * @see TowerManager
+ * @see org.terasology.gooeyDefence.towers.components.TowerTargeter
+ */
+public class TargetMembership {
+    private final Map<EntityRef, Stamp> members = new HashMap<>();
+    private int generation;
+
+    /**
+     * Starts a new shot.
+     * All the enemies hit by the last shot are considered no longer targeted until they are marked as hit again.
+     */
+    public void beginShot() {
+        generation++;
+    }
+
+    /**
+     * Marks an enemy as hit by the current shot.
+     *
+     * @param target The enemy hit
+     * @return True if the enemy was not hit by the previous shot
+     */
+    public boolean markHit(EntityRef target) {
+        Stamp stamp = members.get(target);
+        if (stamp == null) {
+            members.put(target, new Stamp(generation));
+            return true;
+        }
+        boolean isNew = stamp.generation != generation && stamp.generation != generation - 1;
+        stamp.generation = generation;
+        return isNew;
+    }
+
+    /**
+     * Finishes the current shot.
+     * Every enemy that was hit by the last shot, but not by this one, is removed and given to the consumer.
+     *
+     * @param exTargetConsumer Called with each enemy that is no longer targeted
+     */
+    public void endShot(Consumer<EntityRef> exTargetConsumer) {
+        Iterator<Map.Entry<EntityRef, Stamp>> iterator = members.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<EntityRef, Stamp> entry = iterator.next();
+            if (entry.getValue().generation != generation) {
+                iterator.remove();
+                exTargetConsumer.accept(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * @param target The enemy to check
+     * @return True if the enemy was hit by the last shot
+     */
+    public boolean contains(EntityRef target) {
+        return members.containsKey(target);
+    }
+
+    /**
+     * Calls the consumer with every enemy hit by the last shot.
+     *
+     * @param consumer The consumer to call
+     */
+    public void forEach(Consumer<EntityRef> consumer) {
+        members.keySet().forEach(consumer);
+    }
+
+    /**
+     * Forgets all the enemies hit.
+     */
+    public void clear() {
+        members.clear();
+    }
+
+    /**
+     * The generation an enemy was last hit in.
+     * Mutable so that re-hitting an enemy doesn't allocate.
+     */
+    private static final class Stamp {
+        private int generation;
+
+        private Stamp(int generation) {
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.gooeyDefence.towers;
+
+import org.terasology.engine.entitySystem.entity.EntityRef;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+
+/**
+ * Schedules the attacks of every targeter on the field.
+ * <p>
+ * Each targeter is held in a priority queue, keyed by the time it should next fire.
+ * All the shots that are due can then be fired in a single pass, without needing an event per shot.
+ * <p>
+ * Cancelling a targeter only marks it's entry, which is then skipped when it reaches the front of the queue.
+ *
+ * @see TowerManager
+ */
+public class TowerFireScheduler {
+    private final PriorityQueue<ScheduledTargeter> queue =
+            new PriorityQueue<>(Comparator.comparingLong(scheduled -> scheduled.nextFireTime));
+    private final Map<EntityRef, ScheduledTargeter> scheduledTargeters = new HashMap<>();
+
+    /**
+     * Schedules a targeter to fire periodically.
+     * If the targeter is already scheduled, it's old schedule is replaced.
+     *
+     * @param tower       The tower the targeter is part of
+     * @param targeter    The targeter to fire
+     * @param period      The time between shots. Given in ms
+     * @param currentTime The current game time. Given in ms
+     */
+    public void schedule(EntityRef tower, EntityRef targeter, long period, long currentTime) {
+        cancel(targeter);
+        ScheduledTargeter scheduled = new ScheduledTargeter(tower, targeter, Math.max(1, period));
+        scheduled.nextFireTime = currentTime + scheduled.period;
+        scheduledTargeters.put(targeter, scheduled);
+        queue.add(scheduled);
+    }
+
+    /**
+     * Stops a targeter from firing.
+     *
+     * @param targeter The targeter to stop
+     */
+    public void cancel(EntityRef targeter) {
+        ScheduledTargeter scheduled = scheduledTargeters.remove(targeter);
+        if (scheduled != null) {
+            scheduled.cancelled = true;
+        }
+    }
+
+    /**
+     * Removes all the targeters from the schedule.
+     */
+    public void clear() {
+        queue.clear();
+        scheduledTargeters.clear();
+    }
+
+    /**
+     * Fires every targeter that is due, and schedules it's next shot.
+     * <p>
+     * A targeter fires at most once per call. If it has fallen more than a whole period behind,
+     * the missed shots are skipped rather than all fired at once.
+     *
+     * @param currentTime The current game time. Given in ms
+     * @param shooter     Called with the tower and targeter for each shot
+     */
+    public void fireDue(long currentTime, BiConsumer<EntityRef, EntityRef> shooter) {
+        while (!queue.isEmpty() && queue.peek().nextFireTime <= currentTime) {
+            ScheduledTargeter scheduled = queue.poll();
+            if (scheduled.cancelled) {
+                continue;
+            }
+            shooter.accept(scheduled.tower, scheduled.targeter);
+            /* The shot may have cancelled the targeter */
+            if (!scheduled.cancelled) {
+                scheduled.nextFireTime += scheduled.period;
+                if (scheduled.nextFireTime <= currentTime) {
+                    scheduled.nextFireTime = currentTime + scheduled.period;
+                }
+                queue.add(scheduled);
+            }
+        }
+    }
+
+    /**
+     * A single targeter in the schedule.
+     */
+    private static final class ScheduledTargeter {
+        private final EntityRef tower;
+        private final EntityRef targeter;
+        private final long period;
+        private long nextFireTime;
+        private boolean cancelled;
+
+        private ScheduledTargeter(EntityRef tower, EntityRef targeter, long period) {
+            this.tower = tower;
+            this.targeter = targeter;
+            this.period = period;
+        }
+    }
+}
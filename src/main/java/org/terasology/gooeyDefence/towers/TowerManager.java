@@ -15,41 +15,66 @@
  */
 package org.terasology.gooeyDefence.towers;
 
-import com.google.common.collect.Sets;
+import org.terasology.engine.core.Time;
 import org.terasology.engine.entitySystem.entity.EntityManager;
 import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
 import org.terasology.engine.entitySystem.systems.RegisterSystem;
-import org.terasology.engine.logic.delay.DelayManager;
-import org.terasology.engine.logic.delay.PeriodicActionTriggeredEvent;
+import org.terasology.engine.entitySystem.systems.UpdateSubscriberSystem;
 import org.terasology.engine.registry.In;
 import org.terasology.gestalt.entitysystem.event.ReceiveEvent;
 import org.terasology.gooeyDefence.DefenceField;
+import org.terasology.gooeyDefence.EnemyManager;
+import org.terasology.gooeyDefence.events.OnFieldActivated;
 import org.terasology.gooeyDefence.events.OnFieldReset;
+import org.terasology.gooeyDefence.health.HealthSystem;
+import org.terasology.gooeyDefence.movement.components.MovementComponent;
+import org.terasology.gooeyDefence.movement.events.ReachedGoalEvent;
 import org.terasology.gooeyDefence.towers.components.TowerComponent;
 import org.terasology.gooeyDefence.towers.components.TowerCore;
 import org.terasology.gooeyDefence.towers.components.TowerEffector;
+import org.terasology.gooeyDefence.towers.components.TowerMultiBlockComponent;
 import org.terasology.gooeyDefence.towers.components.TowerTargeter;
-import org.terasology.gooeyDefence.towers.events.ApplyEffectEvent;
+import org.terasology.gooeyDefence.towers.events.ApplyEffectBatchEvent;
 import org.terasology.gooeyDefence.towers.events.OnBlocksAdded;
 import org.terasology.gooeyDefence.towers.events.RemoveEffectEvent;
 import org.terasology.gooeyDefence.towers.events.SelectEnemiesEvent;
 import org.terasology.gooeyDefence.towers.events.TowerCreatedEvent;
 import org.terasology.gooeyDefence.towers.events.TowerDestroyedEvent;
+import org.terasology.gooeyDefence.upgrading.OnUpgradeApplied;
+import org.terasology.gooeyDefence.visuals.components.SplashBulletComponent;
+import org.terasology.gooeyDefence.visuals.components.TargeterBulletComponent;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+/**
+ * Handles the towers on the field, and their attacks.
+ * <p>
+ * The attacks of every targeter are timed by a single {@link TowerFireScheduler}, and all due shots are fired
+ * in one pass each update.
+ * <p>
+ * Shots that splash are only resolved when their bullet lands. Every landing in an update is queued in an
+ * {@link ImpactQueue}, and resolved together at the start of the next.
+ *
+ * @see TowerFireScheduler
+ * @see ImpactQueue
+ */
 @RegisterSystem
-public class TowerManager extends BaseComponentSystem {
-    private static final String EVENT_ID = "towerAttack";
-
+public class TowerManager extends BaseComponentSystem implements UpdateSubscriberSystem {
     private final Set<EntityRef> towerEntities = new HashSet<>();
-    @In
-    private DelayManager delayManager;
+    private final TowerFireScheduler fireScheduler = new TowerFireScheduler();
+    private final ImpactQueue impactQueue = new ImpactQueue();
     @In
     private EntityManager entityManager;
+    @In
+    private EnemyManager enemyManager;
+    @In
+    private HealthSystem healthSystem;
+    @In
+    private Time time;
 
     /**
      * Get the drain caused by all the targeters on a tower
@@ -92,25 +117,123 @@ public class TowerManager extends BaseComponentSystem {
 
     /**
      * Checks if the power produced by the cores is more than or equal to the power consumed
+     * <p>
+     * Uses the cached values on the tower, only recalculating them if they are out of date.
      *
      * @param towerComponent The tower to check
      * @return True, if the tower produces enough power
+     * @see #getCorePower(TowerComponent)
+     * @see #getDrain(TowerComponent)
      */
     public static boolean hasEnoughPower(TowerComponent towerComponent) {
-        return getTotalCorePower(towerComponent) >= getTargeterDrain(towerComponent) + getEffectorDrain(towerComponent);
+        return getCorePower(towerComponent) >= getDrain(towerComponent);
+    }
+
+    /**
+     * Get the power generated by all the cores on a tower, using the cached value where possible.
+     *
+     * @param towerComponent The TowerComponent of the tower entity
+     * @return The total power. Zero if the tower has no cores
+     */
+    public static int getCorePower(TowerComponent towerComponent) {
+        updatePowerCache(towerComponent);
+        return towerComponent.getCachedCorePower();
+    }
+
+    /**
+     * Get the drain caused by all the targeters and effectors on a tower, using the cached value where possible.
+     *
+     * @param towerComponent The TowerComponent of the tower entity
+     * @return The total drain. Zero if the tower has no targeters or effectors
+     */
+    public static int getDrain(TowerComponent towerComponent) {
+        updatePowerCache(towerComponent);
+        return towerComponent.getCachedDrain();
+    }
+
+    /**
+     * Checks if a tower currently produces enough power to fire.
+     *
+     * @param towerEntity The tower entity to check
+     * @return True if the entity is a tower with enough power
+     * @see #hasEnoughPower(TowerComponent)
+     */
+    public static boolean isPowered(EntityRef towerEntity) {
+        TowerComponent towerComponent = towerEntity.getComponent(TowerComponent.class);
+        return towerComponent != null && hasEnoughPower(towerComponent);
+    }
+
+    /**
+     * Recalculates the cached power and drain on the tower, if they are out of date.
+     *
+     * @param towerComponent The tower to update
+     */
+    private static void updatePowerCache(TowerComponent towerComponent) {
+        if (!towerComponent.isPowerCached()) {
+            towerComponent.cachePower(getTotalCorePower(towerComponent),
+                    getTargeterDrain(towerComponent) + getEffectorDrain(towerComponent));
+        }
     }
 
     /**
-     * Remove all scheduled delays before the game is shutdown.
+     * Remove all scheduled attacks before the game is shutdown.
      */
     @Override
     public void shutdown() {
+        fireScheduler.clear();
         for (EntityRef tower : towerEntities) {
-            TowerComponent towerComponent = tower.getComponent(TowerComponent.class);
+            tower.destroy();
+        }
+    }
+
+    /**
+     * Resolves the splash shots that landed since the last update, then fires every targeter whose attack is due.
+     * Targeters on towers without enough power skip their shot.
+     * <p>
+     * The damage from all the shots is dealt once they have all fired, so killed enemies die in this update.
+     */
+    @Override
+    public void update(float delta) {
+        if (DefenceField.fieldActivated) {
+            if (!impactQueue.isEmpty()) {
+                impactQueue.resolve(enemyManager, this::handleImpact);
+            }
+            fireScheduler.fireDue(time.getGameTimeInMs(), this::handleScheduledShot);
+            healthSystem.flushDamage();
+        }
+    }
+
+    /**
+     * Called when a bullet with a splash effect reaches it's goal.
+     * Queues the impact to be resolved with the rest of this update's impacts.
+     * <p>
+     * Filters on {@link TargeterBulletComponent}, {@link MovementComponent} and {@link SplashBulletComponent}
+     *
+     * @see ReachedGoalEvent
+     */
+    @ReceiveEvent(components = TargeterBulletComponent.class)
+    public void onSplashLanded(ReachedGoalEvent event, EntityRef bullet, MovementComponent movementComponent, SplashBulletComponent bulletComponent) {
+        if (bulletComponent.targeter.exists()) {
+            impactQueue.add(bulletComponent.targeter, movementComponent.goal, bulletComponent.splashRange);
+        }
+    }
+
+    /**
+     * Rebuilds the attack schedule from all the towers in the world.
+     * <p>
+     * The schedule is not saved, so this is needed when a saved game is loaded.
+     *
+     * @see OnFieldActivated
+     */
+    @ReceiveEvent
+    public void onFieldActivated(OnFieldActivated event, EntityRef entity) {
+        fireScheduler.clear();
+        for (EntityRef towerEntity : entityManager.getEntitiesWith(TowerComponent.class)) {
+            towerEntities.add(towerEntity);
+            TowerComponent towerComponent = towerEntity.getComponent(TowerComponent.class);
             for (EntityRef targeter : towerComponent.targeter) {
-                delayManager.cancelPeriodicAction(tower, buildEventId(targeter));
+                scheduleTargeter(towerEntity, targeter);
             }
-            tower.destroy();
         }
     }
 
@@ -132,6 +255,8 @@ public class TowerManager extends BaseComponentSystem {
             towerEntity.destroy();
         }
         towerEntities.clear();
+        fireScheduler.clear();
+        impactQueue.clear();
     }
 
     /**
@@ -147,7 +272,7 @@ public class TowerManager extends BaseComponentSystem {
 
     /**
      * Called when a tower is created.
-     * Adds the tower to the list and sets the periodic actions for it's attacks
+     * Adds the tower to the list and schedules it's attacks
      * <p>
      * Filters on {@link TowerComponent}
      *
@@ -157,17 +282,13 @@ public class TowerManager extends BaseComponentSystem {
     public void onTowerCreated(TowerCreatedEvent event, EntityRef towerEntity, TowerComponent towerComponent) {
         towerEntities.add(towerEntity);
         for (EntityRef targeter : towerComponent.targeter) {
-            TowerTargeter targeterComponent = DefenceField.getComponentExtending(targeter, TowerTargeter.class);
-            delayManager.addPeriodicAction(towerEntity,
-                    buildEventId(targeter),
-                    targeterComponent.attackSpeed,
-                    targeterComponent.attackSpeed);
+            scheduleTargeter(towerEntity, targeter);
         }
     }
 
     /**
      * Called when a block is added to a tower.
-     * Cancels the old periodic actions and schedules new ones.
+     * Schedules the attacks of any new targeters.
      * <p>
      * Filters on {@link TowerComponent}
      *
@@ -175,25 +296,23 @@ public class TowerManager extends BaseComponentSystem {
      */
     @ReceiveEvent
     public void onTowerChanged(OnBlocksAdded event, EntityRef towerEntity, TowerComponent towerComponent) {
+        towerComponent.invalidatePowerCache();
         for (EntityRef targeter : towerComponent.targeter) {
             if (event.getAddedBlock().contains(targeter)) {
-                TowerTargeter targeterComponent = DefenceField.getComponentExtending(targeter, TowerTargeter.class);
-                delayManager.addPeriodicAction(towerEntity,
-                        buildEventId(targeter),
-                        targeterComponent.attackSpeed,
-                        targeterComponent.attackSpeed);
+                scheduleTargeter(towerEntity, targeter);
             }
         }
     }
 
     /**
      * Called when a tower is destroyed.
-     * Removes all the periodic actions and the tower from the store.
+     * Removes all the scheduled attacks and the tower from the store.
      * <p>
      * Filters on {@link TowerComponent}
      */
     @ReceiveEvent
     public void onTowerDestroyed(TowerDestroyedEvent event, EntityRef towerEntity, TowerComponent towerComponent) {
+        towerComponent.invalidatePowerCache();
         for (EntityRef targeter : towerComponent.targeter) {
             handleTargeterRemoval(towerEntity, targeter);
         }
@@ -201,39 +320,71 @@ public class TowerManager extends BaseComponentSystem {
     }
 
     /**
-     * Called every attack cycle per targeter.
-     * Checks if the tower can fire, and if so, fires that targeter.
+     * Called when a block in a tower is upgraded.
+     * The upgrade may have changed the power or drain of the block, so the cached values are invalidated.
+     * Upgraded targeters are also re-scheduled, in case their attack speed changed,
+     * and have their remembered enemies forgotten, in case their range changed.
      * <p>
-     * Filters on {@link TowerComponent}
+     * Filters on {@link TowerMultiBlockComponent}
      *
-     * @see PeriodicActionTriggeredEvent
+     * @see OnUpgradeApplied
      */
     @ReceiveEvent
-    public void onPeriodicActionTriggered(PeriodicActionTriggeredEvent event, EntityRef entity, TowerComponent component) {
-        if (DefenceField.fieldActivated && isEventIdCorrect(event.getActionId())) {
-            if (hasEnoughPower(component)) {
-                EntityRef targeter = getTargeterId(event.getActionId());
-                handleTowerShooting(component, targeter);
+    public void onUpgradeApplied(OnUpgradeApplied event, EntityRef blockEntity, TowerMultiBlockComponent multiBlockComponent) {
+        EntityRef towerEntity = multiBlockComponent.getTowerEntity();
+        TowerComponent towerComponent = towerEntity.getComponent(TowerComponent.class);
+        if (towerComponent != null) {
+            towerComponent.invalidatePowerCache();
+            if (event.getComponent() instanceof TowerTargeter && towerComponent.targeter.contains(blockEntity)) {
+                scheduleTargeter(towerEntity, blockEntity);
+                DefenceField.getComponentExtending(blockEntity, TowerTargeter.class).getTracker().invalidate();
             }
         }
     }
 
+    /**
+     * Called every attack cycle per targeter.
+     * Checks if the tower can fire, and if so, fires that targeter.
+     *
+     * @param tower    The tower the targeter is part of
+     * @param targeter The targeter that is due to fire
+     */
+    private void handleScheduledShot(EntityRef tower, EntityRef targeter) {
+        TowerComponent component = tower.getComponent(TowerComponent.class);
+        if (component != null && targeter.exists() && hasEnoughPower(component)) {
+            handleTowerShooting(component, targeter);
+        }
+    }
+
+    /**
+     * Adds a targeter to the attack schedule, using it's attack speed as the period.
+     *
+     * @param tower    The tower the targeter is part of
+     * @param targeter The targeter to schedule
+     */
+    private void scheduleTargeter(EntityRef tower, EntityRef targeter) {
+        TowerTargeter<?> targeterComponent = DefenceField.getComponentExtending(targeter, TowerTargeter.class);
+        fireScheduler.schedule(tower, targeter, targeterComponent.attackSpeed, time.getGameTimeInMs());
+    }
+
     /**
      * Handles the removal of a targeter from a tower.
      * Does this by calling the tower to end the effects on the enemies where appropriate.
+     * The enemies remembered by the targeter are also forgotten, so they aren't held onto.
      *
      * @param tower    The main tower entity to remove the targeter from.
      * @param targeter The targeter to remove
      */
     private void handleTargeterRemoval(EntityRef tower, EntityRef targeter) {
 
-        delayManager.cancelPeriodicAction(tower, buildEventId(targeter));
+        fireScheduler.cancel(targeter);
 
         TowerComponent towerComponent = tower.getComponent(TowerComponent.class);
         TowerTargeter<?> targeterComponent = DefenceField.getComponentExtending(targeter, TowerTargeter.class);
-        for (EntityRef enemy : targeterComponent.affectedEnemies) {
-            endEffects(towerComponent.effector, enemy, targeterComponent.getMultiplier());
-        }
+        targeterComponent.getAffectedEnemies().forEach(enemy ->
+                endEffects(towerComponent.effector, enemy, targeterComponent.getMultiplier()));
+        targeterComponent.getAffectedEnemies().clear();
+        targeterComponent.getTracker().invalidate();
     }
 
     /**
@@ -243,72 +394,99 @@ public class TowerManager extends BaseComponentSystem {
      * @param targeter       The targeter that's shooting
      */
     private void handleTowerShooting(TowerComponent towerComponent, EntityRef targeter) {
-        Set<EntityRef> currentTargets = getTargetedEnemies(targeter);
-        TowerTargeter<?> towerTargeter = DefenceField.getComponentExtending(targeter, TowerTargeter.class);
-
-        applyEffectsToTargets(towerComponent.effector, currentTargets, towerTargeter);
+        SelectEnemiesEvent shootEvent = new SelectEnemiesEvent();
+        targeter.send(shootEvent);
+        /* Deferred shots are handled when they land */
+        if (!shootEvent.isDeferred()) {
+            attackTargets(towerComponent, targeter, shootEvent.getTargets());
+        }
+    }
 
-        towerTargeter.affectedEnemies = currentTargets;
+    /**
+     * Handles a splash shot landing.
+     * Attacks the enemies in the splash, if the targeter is still part of a tower.
+     *
+     * @param targeter The targeter that fired the shot
+     * @param targets  The enemies within the splash
+     * @see ImpactQueue
+     */
+    private void handleImpact(EntityRef targeter, List<EntityRef> targets) {
+        TowerMultiBlockComponent multiBlockComponent = targeter.getComponent(TowerMultiBlockComponent.class);
+        if (multiBlockComponent == null) {
+            return;
+        }
+        TowerComponent towerComponent = multiBlockComponent.getTowerEntity().getComponent(TowerComponent.class);
+        if (towerComponent != null && towerComponent.targeter.contains(targeter)) {
+            attackTargets(towerComponent, targeter, targets);
+        }
     }
 
     /**
-     * Calls on the targeter to obtain the enemies it's targeting.
+     * Applies the effects of a tower to the enemies a targeter attacked, and ends them on the enemies it no longer is.
      *
-     * @param targeter The targeter to call on
-     * @return All entities targeted by that targeter.
-     * @see TowerTargeter
+     * @param towerComponent The TowerComponent of the tower entity shooting.
+     * @param targeter       The targeter that's shooting
+     * @param currentTargets The enemies attacked
      */
-    private Set<EntityRef> getTargetedEnemies(EntityRef targeter) {
-        SelectEnemiesEvent shootEvent = new SelectEnemiesEvent();
-        targeter.send(shootEvent);
-        return shootEvent.getTargets();
+    private void attackTargets(TowerComponent towerComponent, EntityRef targeter, Collection<EntityRef> currentTargets) {
+        TowerTargeter<?> towerTargeter = DefenceField.getComponentExtending(targeter, TowerTargeter.class);
+
+        applyEffectsToTargets(towerComponent.effector, currentTargets, towerTargeter);
     }
 
     /**
      * Applies all the effects on a tower to the targeted enemies
+     * <p>
+     * The targets are sent to each effector as a single batch, rather than one event per target.
+     * The new targets and the enemies no longer targeted are found using the targeter's {@link TargetMembership}.
      *
      * @param effectors      The effectors on the tower
      * @param currentTargets The current targets of the tower
      * @param towerTargeter  The targeter shooting
      * @see TowerEffector
+     * @see ApplyEffectBatchEvent
      */
-    private void applyEffectsToTargets(Set<EntityRef> effectors, Set<EntityRef> currentTargets, TowerTargeter towerTargeter) {
-        Set<EntityRef> exTargets = Sets.difference(towerTargeter.affectedEnemies, currentTargets);
+    private void applyEffectsToTargets(Set<EntityRef> effectors, Collection<EntityRef> currentTargets, TowerTargeter towerTargeter) {
+        TargetMembership affectedEnemies = towerTargeter.getAffectedEnemies();
+        float multiplier = towerTargeter.getMultiplier();
+        affectedEnemies.beginShot();
 
         /* Apply effects to targeted enemies */
-        currentTargets.forEach(target -> applyEffects(effectors,
-                target,
-                towerTargeter.getMultiplier(),
-                !towerTargeter.affectedEnemies.contains(target)));
+        ApplyEffectBatchEvent allTargets = new ApplyEffectBatchEvent(currentTargets.size(), multiplier);
+        ApplyEffectBatchEvent newTargets = new ApplyEffectBatchEvent(currentTargets.size(), multiplier);
+        for (EntityRef target : currentTargets) {
+            allTargets.add(target);
+            if (affectedEnemies.markHit(target)) {
+                newTargets.add(target);
+            }
+        }
+        applyEffects(effectors, allTargets, newTargets);
 
         /* Process all the enemies that are no longer targeted */
-        for (EntityRef exTarget : exTargets) {
-            endEffects(effectors, exTarget, towerTargeter.getMultiplier());
-        }
+        affectedEnemies.endShot(exTarget -> endEffects(effectors, exTarget, multiplier));
     }
 
     /**
-     * Applies all the effects on a tower to an enemy.
+     * Applies all the effects on a tower to the targeted enemies.
      *
-     * @param effectors   The effectors to use to apply the effects
-     * @param target      The target enemy
-     * @param multiplier  The multiplier from the targeter
-     * @param isTargetNew Indicates if the enemy is newly targeted. Used to filter effectors
+     * @param effectors  The effectors to use to apply the effects
+     * @param allTargets All the enemies targeted this shot
+     * @param newTargets The enemies that are newly targeted this shot. Used for continuous effectors
      * @see EffectCount
      */
-    private void applyEffects(Set<EntityRef> effectors, EntityRef target, float multiplier, boolean isTargetNew) {
-        ApplyEffectEvent event = new ApplyEffectEvent(target, multiplier);
-
+    private void applyEffects(Set<EntityRef> effectors, ApplyEffectBatchEvent allTargets, ApplyEffectBatchEvent newTargets) {
         for (EntityRef effector : effectors) {
             TowerEffector effectorComponent = DefenceField.getComponentExtending(effector, TowerEffector.class);
             switch (effectorComponent.getEffectCount()) {
                 case CONTINUOUS:
-                    if (isTargetNew) {
-                        effector.send(event);
+                    if (!newTargets.isEmpty()) {
+                        effector.send(newTargets);
                     }
                     break;
                 case PER_SHOT:
-                    effector.send(event);
+                    if (!allTargets.isEmpty()) {
+                        effector.send(allTargets);
+                    }
                     break;
                 default:
                     throw new EnumConstantNotPresentException(EffectCount.class, effectorComponent.getEffectCount().toString());
@@ -340,38 +518,4 @@ public class TowerManager extends BaseComponentSystem {
             }
         }
     }
-
-    /**
-     * Checks that the periodic event is intended for the given tower.
-     *
-     * @param eventId The id of the periodic event
-     * @return True if the event belongs to the tower
-     * @see PeriodicActionTriggeredEvent
-     */
-    private boolean isEventIdCorrect(String eventId) {
-        return eventId.startsWith(EVENT_ID);
-    }
-
-    /**
-     * Gets the targeter entity from the periodic event id.
-     *
-     * @param eventId The id of the periodic event
-     * @return The targeter entity encoded in the event.
-     * @see PeriodicActionTriggeredEvent
-     */
-    private EntityRef getTargeterId(String eventId) {
-        String id = eventId.substring(eventId.indexOf('|') + 1);
-        return entityManager.getEntity(Long.parseLong(id));
-    }
-
-    /**
-     * Creates the periodic event id for the targeter on a tower
-     *
-     * @param targeter The targeter the event is sending for
-     * @return The id for that periodic action event.
-     * @see PeriodicActionTriggeredEvent
-     */
-    private String buildEventId(EntityRef targeter) {
-        return EVENT_ID + "|" + targeter.getId();
-    }
 }
@@ -24,6 +24,58 @@ public class TowerComponent implements Component<TowerComponent> {
     public Set<EntityRef> effector = new HashSet<>();
     public Set<EntityRef> targeter = new HashSet<>();
     public Set<EntityRef> plains = new HashSet<>();
+    /**
+     * The power produced by all the cores, as last calculated by the {@link TowerManager}.
+     * Only valid while {@link #powerCached} is set.
+     */
+    private transient int corePower;
+    /**
+     * The power used by all the targeters and effectors, as last calculated by the {@link TowerManager}.
+     * Only valid while {@link #powerCached} is set.
+     */
+    private transient int drain;
+    private transient boolean powerCached;
+
+    /**
+     * @return True if the cached power and drain are up to date
+     */
+    public boolean isPowerCached() {
+        return powerCached;
+    }
+
+    /**
+     * @return The cached power produced by the cores
+     */
+    public int getCachedCorePower() {
+        return corePower;
+    }
+
+    /**
+     * @return The cached power used by the targeters and effectors
+     */
+    public int getCachedDrain() {
+        return drain;
+    }
+
+    /**
+     * Stores the power and drain of the tower, until the cache is next invalidated.
+     *
+     * @param corePower The power produced by the cores
+     * @param drain     The power used by the targeters and effectors
+     */
+    public void cachePower(int corePower, int drain) {
+        this.corePower = corePower;
+        this.drain = drain;
+        this.powerCached = true;
+    }
+
+    /**
+     * Flags the cached power and drain as out of date.
+     * Should be called whenever the blocks in the tower, or their power values, change.
+     */
+    public void invalidatePowerCache() {
+        powerCached = false;
+    }
 
     @Override
     public void copyFrom(TowerComponent other) {
@@ -31,5 +83,8 @@ public class TowerComponent implements Component<TowerComponent> {
         this.effector = Sets.newHashSet(other.effector);
         this.targeter = Sets.newHashSet(other.targeter);
         this.plains = Sets.newHashSet(other.plains);
+        this.corePower = other.corePower;
+        this.drain = other.drain;
+        this.powerCached = other.powerCached;
     }
 }
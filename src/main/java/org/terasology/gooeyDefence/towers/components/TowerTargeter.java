@@ -2,12 +2,9 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.gooeyDefence.towers.components;
 
-import com.google.common.collect.Sets;
-import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.gestalt.entitysystem.component.Component;
-
-import java.util.HashSet;
-import java.util.Set;
+import org.terasology.gooeyDefence.towers.TargetMembership;
+import org.terasology.gooeyDefence.towers.targeters.TargetTracker;
 
 /**
  * Base class for all the Targeter blocks.
@@ -35,10 +32,21 @@ public abstract class TowerTargeter<T extends TowerTargeter> implements Componen
      * given in ms
      */
     public int attackSpeed;
+    /**
+     * The longest time the enemies found in range are reused for, before searching for enemies again.
+     * Kept separate from the attack speed so that fast towers don't search every shot.
+     * given in ms
+     */
+    public int reacquireInterval = 1000;
     /**
      * All enemies hit by an effect last attack
      */
-    public Set<EntityRef> affectedEnemies = new HashSet<>();
+    private transient TargetMembership affectedEnemies;
+    /**
+     * Remembers the enemies found in range by this targeter.
+     * Not saved, as it's rebuilt on the first shot.
+     */
+    private transient TargetTracker tracker;
 
     /**
      * A balancing multiplier passed to effectors on this tower.
@@ -48,11 +56,31 @@ public abstract class TowerTargeter<T extends TowerTargeter> implements Componen
      */
     public abstract float getMultiplier();
 
+    /**
+     * @return The enemies hit by an effect last attack
+     */
+    public TargetMembership getAffectedEnemies() {
+        if (affectedEnemies == null) {
+            affectedEnemies = new TargetMembership();
+        }
+        return affectedEnemies;
+    }
+
+    /**
+     * @return The tracker holding the enemies last found in range by this targeter
+     */
+    public TargetTracker getTracker() {
+        if (tracker == null) {
+            tracker = new TargetTracker();
+        }
+        return tracker;
+    }
+
     @Override
     public void copyFrom(T other) {
         this.drain = other.drain;
         this.range = other.range;
         this.attackSpeed = other.attackSpeed;
-        this.affectedEnemies = Sets.newHashSet(other.affectedEnemies);
+        this.reacquireInterval = other.reacquireInterval;
     }
 }
@@ -5,9 +5,11 @@ package org.terasology.gooeyDefence.towers.effectors;
 import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
 import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.registry.In;
 import org.terasology.gestalt.entitysystem.event.ReceiveEvent;
-import org.terasology.gooeyDefence.health.events.DamageEntityEvent;
+import org.terasology.gooeyDefence.health.HealthSystem;
 import org.terasology.gooeyDefence.towers.TowerManager;
+import org.terasology.gooeyDefence.towers.events.ApplyEffectBatchEvent;
 import org.terasology.gooeyDefence.towers.events.ApplyEffectEvent;
 
 /**
@@ -18,6 +20,8 @@ import org.terasology.gooeyDefence.towers.events.ApplyEffectEvent;
  */
 @RegisterSystem
 public class DamageEffectorSystem extends BaseComponentSystem {
+    @In
+    private HealthSystem healthSystem;
 
     /**
      * Called to apply the effect to the target of the event.
@@ -28,6 +32,18 @@ public class DamageEffectorSystem extends BaseComponentSystem {
      */
     @ReceiveEvent
     public void onApplyEffect(ApplyEffectEvent event, EntityRef entity, DamageEffectorComponent component) {
-        event.getTarget().send(new DamageEntityEvent(component.damage));
+        healthSystem.queueDamage(event.getTarget(), component.damage);
+    }
+
+    /**
+     * Called to apply the effect to every target in a batch.
+     * <p>
+     * Filters on DamageEffectorComponent
+     *
+     * @see ApplyEffectBatchEvent
+     */
+    @ReceiveEvent
+    public void onApplyEffectBatch(ApplyEffectBatchEvent event, EntityRef entity, DamageEffectorComponent component) {
+        event.forEachTarget(target -> healthSystem.queueDamage(target, component.damage));
     }
 }
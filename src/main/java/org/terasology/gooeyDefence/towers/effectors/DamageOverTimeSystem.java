@@ -0,0 +1,340 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.gooeyDefence.towers.effectors;
+
+import org.terasology.engine.core.Time;
+import org.terasology.engine.entitySystem.entity.EntityManager;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
+import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.entitySystem.systems.UpdateSubscriberSystem;
+import org.terasology.engine.registry.In;
+import org.terasology.engine.registry.Share;
+import org.terasology.gestalt.entitysystem.event.ReceiveEvent;
+import org.terasology.gooeyDefence.DefenceField;
+import org.terasology.gooeyDefence.DefenceUris;
+import org.terasology.gooeyDefence.EnemyManager;
+import org.terasology.gooeyDefence.EnemyStateStore;
+import org.terasology.gooeyDefence.components.GooeyComponent;
+import org.terasology.gooeyDefence.events.OnFieldActivated;
+import org.terasology.gooeyDefence.events.OnFieldReset;
+import org.terasology.gooeyDefence.health.HealthSystem;
+import org.terasology.gooeyDefence.visuals.InWorldRenderer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Deals the damage over time for all the poisoned and burning enemies.
+ * <p>
+ * Each active effect is one entry in a set of packed arrays, holding it's target, source, damage, rate, expiry and
+ * next tick. All the effects are ticked in a single pass each update, and the damage is queued with the
+ * {@link HealthSystem} so that every effect on an enemy is dealt as one event.
+ * <p>
+ * An enemy can have one effect of each type from each source. Applying it again only extends the effect.
+ * The effects are not saved, so all of them end when the field is reset or loaded.
+ * When a saved field is loaded, the particles for them are also removed from every enemy, as those are saved.
+ *
+ * @see PoisonEffectorSystem
+ * @see FireEffectorSystem
+ */
+@RegisterSystem
+@Share(DamageOverTimeSystem.class)
+public class DamageOverTimeSystem extends BaseComponentSystem implements UpdateSubscriberSystem {
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The index of each active effect, by it's target, source and type.
+     */
+    private final Map<EffectKey, Integer> indices = new HashMap<>();
+    /**
+     * The number of active effects of each type on each enemy.
+     * Used to tell when the particle effect should be removed.
+     */
+    private final Map<EntityRef, int[]> activeCounts = new HashMap<>();
+
+    private EntityRef[] targets = new EntityRef[INITIAL_CAPACITY];
+    private EntityRef[] sources = new EntityRef[INITIAL_CAPACITY];
+    private EffectType[] types = new EffectType[INITIAL_CAPACITY];
+    private int[] damage = new int[INITIAL_CAPACITY];
+    private long[] rate = new long[INITIAL_CAPACITY];
+    private long[] expiry = new long[INITIAL_CAPACITY];
+    private long[] nextTick = new long[INITIAL_CAPACITY];
+    private int count;
+
+    @In
+    private Time time;
+    @In
+    private EntityManager entityManager;
+    @In
+    private InWorldRenderer inWorldRenderer;
+    @In
+    private HealthSystem healthSystem;
+    @In
+    private EnemyManager enemyManager;
+
+    /**
+     * Removes all the effects when the field is reset.
+     *
+     * @see OnFieldReset
+     */
+    @ReceiveEvent
+    public void onFieldReset(OnFieldReset event, EntityRef entity) {
+        clear();
+    }
+
+    /**
+     * Removes all the effects when the field is activated, as they were not saved.
+     * The particles and status of every effect are removed from all the enemies, as they would otherwise never end.
+     *
+     * @see OnFieldActivated
+     */
+    @ReceiveEvent
+    public void onFieldActivated(OnFieldActivated event, EntityRef entity) {
+        clear();
+        for (EntityRef enemy : entityManager.getEntitiesWith(GooeyComponent.class)) {
+            for (EffectType type : EffectType.values()) {
+                if (inWorldRenderer.hasParticleEffect(enemy, type.getParticlePrefab())) {
+                    inWorldRenderer.removeParticleEffect(enemy, type.getParticlePrefab());
+                }
+                setStatus(enemy, type, false);
+            }
+        }
+    }
+
+    /**
+     * Starts an effect on an enemy, or extends it if the enemy already has it from the same source.
+     * <p>
+     * A new effect deals it's first damage after one period. An extended effect keeps it's current timing.
+     *
+     * @param target         The enemy to affect
+     * @param source         The effector causing the effect
+     * @param type           The type of effect
+     * @param damagePerTick  The damage dealt each period
+     * @param period         The time between each lot of damage. Given in ms
+     * @param duration       How long the effect lasts from now. Given in ms
+     */
+    public void applyEffect(EntityRef target, EntityRef source, EffectType type, int damagePerTick, long period, long duration) {
+        if (!target.exists()) {
+            return;
+        }
+        long now = time.getGameTimeInMs();
+        EffectKey key = new EffectKey(target, source, type);
+        Integer existing = indices.get(key);
+        if (existing != null) {
+            damage[existing] = damagePerTick;
+            expiry[existing] = now + duration;
+            return;
+        }
+        ensureCapacity(count + 1);
+        int index = count++;
+        targets[index] = target;
+        sources[index] = source;
+        types[index] = type;
+        damage[index] = damagePerTick;
+        rate[index] = Math.max(1, period);
+        expiry[index] = now + duration;
+        nextTick[index] = now + rate[index];
+        indices.put(key, index);
+
+        int[] counts = activeCounts.computeIfAbsent(target, enemy -> new int[EffectType.values().length]);
+        if (counts[type.ordinal()]++ == 0) {
+            inWorldRenderer.addParticleEffect(target, type.getParticlePrefab());
+            setStatus(target, type, true);
+        }
+    }
+
+    /**
+     * @param target The enemy to check
+     * @param type   The type of effect to check for
+     * @return True if the enemy has an effect of that type from any source
+     */
+    public boolean hasEffect(EntityRef target, EffectType type) {
+        int[] counts = activeCounts.get(target);
+        return counts != null && counts[type.ordinal()] > 0;
+    }
+
+    /**
+     * Calls the consumer with the target and source of every active effect of a type.
+     * The consumer must not start or end any effects.
+     *
+     * @param type     The type of effect
+     * @param consumer Called with the target and then the source of each effect
+     */
+    public void forEachEffect(EffectType type, BiConsumer<EntityRef, EntityRef> consumer) {
+        for (int i = 0; i < count; i++) {
+            if (types[i] == type) {
+                consumer.accept(targets[i], sources[i]);
+            }
+        }
+    }
+
+    /**
+     * Ticks every active effect, queueing the damage for each.
+     * The damage is then dealt straight away, so enemies killed by it die in this update.
+     */
+    @Override
+    public void update(float delta) {
+        if (!DefenceField.fieldActivated || count == 0) {
+            return;
+        }
+        long now = time.getGameTimeInMs();
+        /* Iterate backwards, so that removing an effect doesn't skip the one moved into it's place */
+        for (int i = count - 1; i >= 0; i--) {
+            if (!targets[i].exists()) {
+                remove(i, false);
+                continue;
+            }
+            while (nextTick[i] <= now && nextTick[i] <= expiry[i]) {
+                healthSystem.queueDamage(targets[i], damage[i]);
+                nextTick[i] += rate[i];
+            }
+            if (now >= expiry[i]) {
+                remove(i, true);
+            }
+        }
+        healthSystem.flushDamage();
+    }
+
+    /**
+     * Ends an effect, moving the last effect into it's place.
+     *
+     * @param index         The index of the effect to end
+     * @param removeVisuals True if the particle effect should be removed if this was the last of it's type
+     */
+    private void remove(int index, boolean removeVisuals) {
+        EntityRef target = targets[index];
+        EffectType type = types[index];
+        indices.remove(new EffectKey(target, sources[index], type));
+        int[] counts = activeCounts.get(target);
+        if (counts != null && --counts[type.ordinal()] <= 0) {
+            counts[type.ordinal()] = 0;
+            if (removeVisuals) {
+                inWorldRenderer.removeParticleEffect(target, type.getParticlePrefab());
+                setStatus(target, type, false);
+            }
+            if (Arrays.stream(counts).allMatch(value -> value == 0)) {
+                activeCounts.remove(target);
+            }
+        }
+
+        int last = count - 1;
+        if (index != last) {
+            targets[index] = targets[last];
+            sources[index] = sources[last];
+            types[index] = types[last];
+            damage[index] = damage[last];
+            rate[index] = rate[last];
+            expiry[index] = expiry[last];
+            nextTick[index] = nextTick[last];
+            indices.put(new EffectKey(targets[index], sources[index], types[index]), index);
+        }
+        targets[last] = null;
+        sources[last] = null;
+        count--;
+    }
+
+    /**
+     * Marks an enemy in the store as having, or no longer having, an effect.
+     *
+     * @param target The enemy to mark
+     * @param type   The type of effect
+     * @param value  True if the enemy now has the effect
+     */
+    private void setStatus(EntityRef target, EffectType type, boolean value) {
+        EnemyStateStore store = enemyManager.getEnemyStore();
+        int slot = store.getSlot(target);
+        if (slot >= 0) {
+            store.setStatus(slot, type.getStatusFlag(), value);
+        }
+    }
+
+    /**
+     * Ends all effects, without removing their visuals.
+     */
+    private void clear() {
+        Arrays.fill(targets, 0, count, null);
+        Arrays.fill(sources, 0, count, null);
+        count = 0;
+        indices.clear();
+        activeCounts.clear();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > targets.length) {
+            int newCapacity = Math.max(capacity, targets.length * 2);
+            targets = Arrays.copyOf(targets, newCapacity);
+            sources = Arrays.copyOf(sources, newCapacity);
+            types = Arrays.copyOf(types, newCapacity);
+            damage = Arrays.copyOf(damage, newCapacity);
+            rate = Arrays.copyOf(rate, newCapacity);
+            expiry = Arrays.copyOf(expiry, newCapacity);
+            nextTick = Arrays.copyOf(nextTick, newCapacity);
+        }
+    }
+
+    /**
+     * The types of damage over time.
+     */
+    public enum EffectType {
+        POISON(DefenceUris.POISON_PARTICLES, EnemyStateStore.STATUS_POISONED),
+        FIRE(DefenceUris.FIRE_PARTICLES, EnemyStateStore.STATUS_BURNING);
+
+        private final String particlePrefab;
+        private final int statusFlag;
+
+        EffectType(String particlePrefab, int statusFlag) {
+            this.particlePrefab = particlePrefab;
+            this.statusFlag = statusFlag;
+        }
+
+        /**
+         * @return The flag set in the {@link EnemyStateStore} for enemies with this effect
+         */
+        public int getStatusFlag() {
+            return statusFlag;
+        }
+
+        /**
+         * @return The particle effect shown on enemies with this effect
+         */
+        public String getParticlePrefab() {
+            return particlePrefab;
+        }
+    }
+
+    /**
+     * Identifies a single effect by it's target, source and type.
+     */
+    private static final class EffectKey {
+        private final EntityRef target;
+        private final EntityRef source;
+        private final EffectType type;
+
+        private EffectKey(EntityRef target, EntityRef source, EffectType type) {
+            this.target = target;
+            this.source = source;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            EffectKey other = (EffectKey) o;
+            return target.equals(other.target) && source.equals(other.source) && type == other.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(target, source, type);
+        }
+    }
+}
@@ -3,50 +3,47 @@
 package org.terasology.gooeyDefence.towers.effectors;
 
 import org.joml.Vector3f;
+import org.terasology.engine.core.Time;
 import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
 import org.terasology.engine.entitySystem.systems.RegisterSystem;
-import org.terasology.engine.logic.delay.DelayManager;
-import org.terasology.engine.logic.delay.DelayedActionTriggeredEvent;
-import org.terasology.engine.logic.delay.PeriodicActionTriggeredEvent;
-import org.terasology.engine.logic.location.LocationComponent;
+import org.terasology.engine.entitySystem.systems.UpdateSubscriberSystem;
 import org.terasology.engine.registry.In;
 import org.terasology.engine.utilities.random.FastRandom;
 import org.terasology.engine.utilities.random.Random;
 import org.terasology.gestalt.entitysystem.event.ReceiveEvent;
-import org.terasology.gooeyDefence.DefenceUris;
+import org.terasology.gooeyDefence.DefenceField;
 import org.terasology.gooeyDefence.EnemyManager;
-import org.terasology.gooeyDefence.components.GooeyComponent;
-import org.terasology.gooeyDefence.health.events.DamageEntityEvent;
+import org.terasology.gooeyDefence.EnemyStateStore;
+import org.terasology.gooeyDefence.events.OnFieldActivated;
+import org.terasology.gooeyDefence.events.OnFieldReset;
 import org.terasology.gooeyDefence.towers.TowerManager;
+import org.terasology.gooeyDefence.towers.effectors.DamageOverTimeSystem.EffectType;
+import org.terasology.gooeyDefence.towers.events.ApplyEffectBatchEvent;
 import org.terasology.gooeyDefence.towers.events.ApplyEffectEvent;
-import org.terasology.gooeyDefence.visuals.InWorldRenderer;
 
-import java.util.HashSet;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * Applies the fire effect to the targeted enemies.
  * <p>
  * Fire applies a damage over time, with a chance to have the effect spread to nearby enemies.
  * After a short duration, the burning ends but the enemy can be re-ignited by other enemies.
+ * The burning itself is handled by the {@link DamageOverTimeSystem}.
  *
  * @see FireEffectorComponent
  * @see TowerManager
  */
 @RegisterSystem
-public class FireEffectorSystem extends BaseComponentSystem {
+public class FireEffectorSystem extends BaseComponentSystem implements UpdateSubscriberSystem {
     /**
-     * The id of the event to initiate the burn
-     */
-    private static final String APPLY_BURN_ID = "applyBurn";
-    /**
-     * The id of the event to end the burn
-     */
-    private static final String END_BURN_ID = "endBurn";
-    /**
-     * How often the fire should have a chance to spread.
+     * How often the fire should deal damage and have a chance to spread.
      * Given in milliseconds.
      */
     private static final int BURN_RATE = 500;
@@ -61,17 +58,57 @@ public class FireEffectorSystem extends BaseComponentSystem {
     private static final float BURN_SPREAD_CHANCE = 0.4f;
 
     /**
-     * All enemies currently on fire.
+     * The burning enemies that haven't spread yet this round, mapped to the effector that set them alight.
+     * Kept in the order they will spread in, and only refilled once every enemy in it has had it's turn.
+     */
+    private final Map<EntityRef, EntityRef> pendingSpread = new LinkedHashMap<>();
+    /**
+     * The enemies to ignite at the end of this spread, and the effectors they are ignited by.
      */
-    private Set<EntityRef> burningEnemies = new HashSet<>();
+    private final List<EntityRef> spreadTargets = new ArrayList<>();
+    private final List<EntityRef> spreadSources = new ArrayList<>();
+    /**
+     * Marks the store slots already picked to be ignited this spread.
+     */
+    private boolean[] pickedSlots = new boolean[64];
+    private final Vector3f positionBuffer = new Vector3f();
+    /**
+     * Kept as fields so that spreading doesn't allocate a new lambda each time.
+     */
+    private final BiConsumer<EntityRef, EntityRef> addPending = pendingSpread::putIfAbsent;
+    private final Consumer<EntityRef> spreadConsumer = this::spreadTo;
+    private long nextSpread;
+    private EntityRef currentSource;
 
     @In
     private EnemyManager enemyManager;
     @In
-    private DelayManager delayManager;
+    private DamageOverTimeSystem damageOverTimeSystem;
     @In
-    private InWorldRenderer inWorldRenderer;
-    private final Random random = new FastRandom();
+    private Time time;
+    private Random random = new FastRandom(DefenceField.fireSpreadSeed);
+
+    /**
+     * Resets the fire spreading, so that the same wave spreads the same way.
+     * <p>
+     * Sent when the field is activated.
+     *
+     * @see OnFieldActivated
+     */
+    @ReceiveEvent
+    public void onFieldActivated(OnFieldActivated event, EntityRef entity) {
+        resetSpread();
+    }
+
+    /**
+     * Resets the fire spreading when the field is reset.
+     *
+     * @see OnFieldReset
+     */
+    @ReceiveEvent
+    public void onFieldReset(OnFieldReset event, EntityRef entity) {
+        resetSpread();
+    }
 
     /**
      * Applies the initial fire effect to an entity
@@ -83,77 +120,123 @@ public class FireEffectorSystem extends BaseComponentSystem {
      */
     @ReceiveEvent
     public void onApplyEffect(ApplyEffectEvent event, EntityRef entity, FireEffectorComponent effectorComponent) {
-        burningEnemies.add(event.getTarget());
-        if (!delayManager.hasPeriodicAction(entity, APPLY_BURN_ID)) {
-            delayManager.addPeriodicAction(entity, APPLY_BURN_ID, BURN_RATE, BURN_RATE);
-        }
-        inWorldRenderer.addParticleEffect(event.getTarget(), DefenceUris.FIRE_PARTICLES);
-        delayManager.addDelayedAction(event.getTarget(), END_BURN_ID, effectorComponent.fireDuration);
+        igniteEnemy(event.getTarget(), entity, effectorComponent);
     }
 
     /**
-     * Processes all burning enemies
+     * Applies the initial fire effect to every entity in a batch
      * <p>
      * Filters on {@link FireEffectorComponent}
      * Sent against the effector
      *
-     * @see PeriodicActionTriggeredEvent
+     * @see ApplyEffectBatchEvent
      */
     @ReceiveEvent
-    public void onPeriodicActionTriggered(PeriodicActionTriggeredEvent event, EntityRef entity, FireEffectorComponent effectorComponent) {
-        Set<EntityRef> newEnemies = new HashSet<>();
-        for (EntityRef enemy : burningEnemies) {
-            enemy.send(new DamageEntityEvent(effectorComponent.damage));
-            if (enemy.exists()) {
-                newEnemies.addAll(spreadFire(enemy));
-            }
+    public void onApplyEffectBatch(ApplyEffectBatchEvent event, EntityRef entity, FireEffectorComponent effectorComponent) {
+        event.forEachTarget(target -> igniteEnemy(target, entity, effectorComponent));
+    }
+
+    /**
+     * Spreads the fire from the burning enemies every {@link #BURN_RATE} milliseconds.
+     * <p>
+     * At most {@link DefenceField#fireSpreadBudget} burning enemies spread each time. The rest are carried over to
+     * the next spread, and new burning enemies are only added once all of those have spread.
+     * So every enemy that keeps burning gets a turn within a round.
+     */
+    @Override
+    public void update(float delta) {
+        if (!DefenceField.fieldActivated) {
+            return;
+        }
+        long now = time.getGameTimeInMs();
+        if (now < nextSpread) {
+            return;
         }
+        nextSpread = now + BURN_RATE;
 
-        burningEnemies.addAll(newEnemies);
-        burningEnemies = burningEnemies.stream()
-                .filter(EntityRef::exists)
-                .collect(Collectors.toSet());
+        if (pendingSpread.isEmpty()) {
+            damageOverTimeSystem.forEachEffect(EffectType.FIRE, addPending);
+            if (pendingSpread.isEmpty()) {
+                return;
+            }
+        }
 
-        for (EntityRef newEnemy : newEnemies) {
-            delayManager.addDelayedAction(newEnemy, END_BURN_ID, effectorComponent.fireDuration);
-            inWorldRenderer.addParticleEffect(newEnemy, DefenceUris.FIRE_PARTICLES);
+        EnemyStateStore store = enemyManager.getEnemyStore();
+        if (pickedSlots.length < store.size()) {
+            pickedSlots = new boolean[Math.max(store.size(), pickedSlots.length * 2)];
+        }
+        int budget = DefenceField.fireSpreadBudget > 0 ? DefenceField.fireSpreadBudget : Integer.MAX_VALUE;
+        Iterator<Map.Entry<EntityRef, EntityRef>> iterator = pendingSpread.entrySet().iterator();
+        while (budget > 0 && iterator.hasNext()) {
+            Map.Entry<EntityRef, EntityRef> entry = iterator.next();
+            iterator.remove();
+            int slot = store.getSlot(entry.getKey());
+            /* Enemies that have died or stopped burning since the round began don't use up the budget */
+            if (slot >= 0 && store.hasStatus(slot, EnemyStateStore.STATUS_BURNING)) {
+                currentSource = entry.getValue();
+                store.getPosition(slot, positionBuffer);
+                enemyManager.forEachEnemyInRange(positionBuffer, 0, BURN_RANGE, spreadConsumer);
+                budget--;
+            }
         }
+        currentSource = null;
 
-        if (burningEnemies.isEmpty()) {
-            delayManager.cancelPeriodicAction(entity, APPLY_BURN_ID);
+        /* Ignite after searching, as igniting changes the burning enemies */
+        for (int i = 0; i < spreadTargets.size(); i++) {
+            EntityRef source = spreadSources.get(i);
+            FireEffectorComponent effectorComponent = source.getComponent(FireEffectorComponent.class);
+            if (effectorComponent != null) {
+                igniteEnemy(spreadTargets.get(i), source, effectorComponent);
+            }
+        }
+        for (EntityRef target : spreadTargets) {
+            int slot = store.getSlot(target);
+            if (slot >= 0) {
+                pickedSlots[slot] = false;
+            }
         }
+        spreadTargets.clear();
+        spreadSources.clear();
     }
 
+    /**
+     * Sets an enemy on fire, or extends it's burning if it is already on fire from this effector.
+     *
+     * @param target            The enemy to ignite
+     * @param entity            The effector igniting the enemy
+     * @param effectorComponent The component of the effector
+     */
+    private void igniteEnemy(EntityRef target, EntityRef entity, FireEffectorComponent effectorComponent) {
+        damageOverTimeSystem.applyEffect(target, entity, EffectType.FIRE,
+                effectorComponent.damage, BURN_RATE, effectorComponent.fireDuration);
+    }
 
     /**
-     * Stops an enemy from burning
-     * <p>
-     * Filters on {@link GooeyComponent}
-     * Sent against the burnt enemy
+     * Picks an enemy near a burning enemy to spread the fire too, if it passes the burn chance.
+     * Does not pick any enemies already on fire, or already picked this spread.
      *
-     * @see DelayedActionTriggeredEvent
+     * @param enemy The nearby enemy
      */
-    @ReceiveEvent(components = GooeyComponent.class)
-    public void onDelayedActionTriggered(DelayedActionTriggeredEvent event, EntityRef entity) {
-        if (event.getActionId().equals(END_BURN_ID)) {
-            burningEnemies.remove(entity);
-            inWorldRenderer.removeParticleEffect(entity, DefenceUris.FIRE_PARTICLES);
+    private void spreadTo(EntityRef enemy) {
+        EnemyStateStore store = enemyManager.getEnemyStore();
+        int slot = store.getSlot(enemy);
+        if (slot < 0 || pickedSlots[slot]) {
+            return;
+        }
+        if (!store.hasStatus(slot, EnemyStateStore.STATUS_BURNING) && canBurn()) {
+            pickedSlots[slot] = true;
+            spreadTargets.add(store.getEntity(slot));
+            spreadSources.add(currentSource);
         }
     }
 
     /**
-     * Gets all the enemies to spread the fire too.
-     * Does not return any enemies already on fire.
-     *
-     * @param source The enemy spreading the fire
-     * @return All enemies to spread the fire too.
-     */
-    private Set<EntityRef> spreadFire(EntityRef source) {
-        Vector3f sourcePos = source.getComponent(LocationComponent.class).getWorldPosition(new Vector3f());
-        return enemyManager.getEnemiesInRange(sourcePos, BURN_RANGE)
-                .stream()
-                .filter(enemy -> !burningEnemies.contains(enemy) && canBurn())
-                .collect(Collectors.toSet());
+     * Restarts the spreading from the first burning enemy, with the random generator seeded from the config.
+     */
+    private void resetSpread() {
+        random = new FastRandom(DefenceField.fireSpreadSeed);
+        pendingSpread.clear();
+        nextSpread = 0;
     }
 
     /**
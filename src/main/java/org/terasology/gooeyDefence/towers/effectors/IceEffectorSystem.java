@@ -2,28 +2,54 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.gooeyDefence.towers.effectors;
 
+import org.terasology.engine.entitySystem.entity.EntityManager;
 import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
 import org.terasology.engine.entitySystem.systems.RegisterSystem;
 import org.terasology.engine.registry.In;
 import org.terasology.gestalt.entitysystem.event.ReceiveEvent;
 import org.terasology.gooeyDefence.DefenceUris;
-import org.terasology.gooeyDefence.movement.components.MovementComponent;
+import org.terasology.gooeyDefence.EnemyManager;
+import org.terasology.gooeyDefence.EnemyStateStore;
+import org.terasology.gooeyDefence.components.GooeyComponent;
+import org.terasology.gooeyDefence.events.OnFieldActivated;
 import org.terasology.gooeyDefence.towers.TowerManager;
+import org.terasology.gooeyDefence.towers.events.ApplyEffectBatchEvent;
 import org.terasology.gooeyDefence.towers.events.ApplyEffectEvent;
 import org.terasology.gooeyDefence.towers.events.RemoveEffectEvent;
 import org.terasology.gooeyDefence.visuals.InWorldRenderer;
 
 /**
  * Slows the target enemy by the given amount.
+ * <p>
+ * The slows are kept in the {@link EnemyStateStore}, which works out the enemy's speed from all of them.
+ * They are not saved, so the ice particles are removed from every enemy when a saved field is loaded.
  *
  * @see IceEffectorComponent
  * @see TowerManager
  */
 @RegisterSystem
 public class IceEffectorSystem extends BaseComponentSystem {
+    @In
+    private EntityManager entityManager;
     @In
     private InWorldRenderer inWorldRenderer;
+    @In
+    private EnemyManager enemyManager;
+
+    /**
+     * Removes the ice particles from all the enemies, as the slows themselves were not saved.
+     *
+     * @see OnFieldActivated
+     */
+    @ReceiveEvent
+    public void onFieldActivated(OnFieldActivated event, EntityRef entity) {
+        for (EntityRef enemy : entityManager.getEntitiesWith(GooeyComponent.class)) {
+            if (inWorldRenderer.hasParticleEffect(enemy, DefenceUris.ICE_PARTICLES)) {
+                inWorldRenderer.removeParticleEffect(enemy, DefenceUris.ICE_PARTICLES);
+            }
+        }
+    }
 
     /**
      * Applies the slow effect to the target
@@ -34,10 +60,34 @@ public class IceEffectorSystem extends BaseComponentSystem {
      */
     @ReceiveEvent
     public void onApplyEffect(ApplyEffectEvent event, EntityRef entity, IceEffectorComponent component) {
-        EntityRef enemy = event.getTarget();
-        MovementComponent movementComponent = enemy.getComponent(MovementComponent.class);
-        double reducedSpeed = movementComponent.speed * component.slow;
-        movementComponent.speed = (float) reducedSpeed;
+        slowEnemy(event.getTarget(), component);
+    }
+
+    /**
+     * Applies the slow effect to every target in a batch
+     * <p>
+     * Filters on {@link IceEffectorComponent}
+     *
+     * @see ApplyEffectBatchEvent
+     */
+    @ReceiveEvent
+    public void onApplyEffectBatch(ApplyEffectBatchEvent event, EntityRef entity, IceEffectorComponent component) {
+        event.forEachTarget(target -> slowEnemy(target, component));
+    }
+
+    /**
+     * Slows an enemy down by the effector's slow amount.
+     *
+     * @param enemy     The enemy to slow
+     * @param component The effector slowing the enemy
+     */
+    private void slowEnemy(EntityRef enemy, IceEffectorComponent component) {
+        EnemyStateStore store = enemyManager.getEnemyStore();
+        int slot = store.getSlot(enemy);
+        if (slot < 0) {
+            return;
+        }
+        store.addSlow(slot, component.slow);
         inWorldRenderer.addParticleEffect(enemy, DefenceUris.ICE_PARTICLES);
     }
 
@@ -51,8 +101,14 @@ public class IceEffectorSystem extends BaseComponentSystem {
     @ReceiveEvent
     public void onRemoveEffect(RemoveEffectEvent event, EntityRef entity, IceEffectorComponent component) {
         EntityRef enemy = event.getTarget();
-        MovementComponent movementComponent = enemy.getComponent(MovementComponent.class);
-        movementComponent.speed = movementComponent.speed / component.slow;
-        inWorldRenderer.removeParticleEffect(enemy, DefenceUris.ICE_PARTICLES);
+        EnemyStateStore store = enemyManager.getEnemyStore();
+        int slot = store.getSlot(enemy);
+        if (slot < 0) {
+            return;
+        }
+        store.removeSlow(slot, component.slow);
+        if (store.getSlowCount(slot) == 0) {
+            inWorldRenderer.removeParticleEffect(enemy, DefenceUris.ICE_PARTICLES);
+        }
     }
 }
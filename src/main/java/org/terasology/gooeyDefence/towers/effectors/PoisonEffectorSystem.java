@@ -2,22 +2,16 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.gooeyDefence.towers.effectors;
 
-import org.terasology.engine.entitySystem.entity.EntityManager;
 import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
 import org.terasology.engine.entitySystem.systems.RegisterSystem;
-import org.terasology.engine.logic.delay.DelayManager;
-import org.terasology.engine.logic.delay.DelayedActionTriggeredEvent;
-import org.terasology.engine.logic.delay.PeriodicActionTriggeredEvent;
 import org.terasology.engine.registry.In;
 import org.terasology.gestalt.entitysystem.event.ReceiveEvent;
-import org.terasology.gooeyDefence.DefenceField;
-import org.terasology.gooeyDefence.DefenceUris;
-import org.terasology.gooeyDefence.components.GooeyComponent;
-import org.terasology.gooeyDefence.health.events.DamageEntityEvent;
+import org.terasology.gooeyDefence.health.HealthSystem;
 import org.terasology.gooeyDefence.towers.TowerManager;
+import org.terasology.gooeyDefence.towers.effectors.DamageOverTimeSystem.EffectType;
+import org.terasology.gooeyDefence.towers.events.ApplyEffectBatchEvent;
 import org.terasology.gooeyDefence.towers.events.ApplyEffectEvent;
-import org.terasology.gooeyDefence.visuals.InWorldRenderer;
 
 /**
  * Deals an initial damage, then damage over time to a target.
@@ -26,6 +20,7 @@ import org.terasology.gooeyDefence.visuals.InWorldRenderer;
  * however effects from different poison effectors can stack
  *
  * @see PoisonEffectorComponent
+ * @see DamageOverTimeSystem
  * @see TowerManager
  */
 @RegisterSystem
@@ -35,21 +30,11 @@ public class PoisonEffectorSystem extends BaseComponentSystem {
      * given in milliseconds
      */
     private static final int POISON_RATE = 200;
-    /**
-     * The id to use when registering the periodic event
-     */
-    private static final String APPLY_POISON_ID = "applyPoisonDamage";
-    /**
-     * The id to use when registering the end periodic event
-     */
-    private static final String END_POISON_ID = "endPoisonDamage";
 
     @In
-    private DelayManager delayManager;
+    private DamageOverTimeSystem damageOverTimeSystem;
     @In
-    private EntityManager entityManager;
-    @In
-    private InWorldRenderer inWorldRenderer;
+    private HealthSystem healthSystem;
 
     /**
      * Applies the effect to the target
@@ -61,96 +46,32 @@ public class PoisonEffectorSystem extends BaseComponentSystem {
      */
     @ReceiveEvent
     public void onApplyEffect(ApplyEffectEvent event, EntityRef entity, PoisonEffectorComponent effectorComponent) {
-        EntityRef target = event.getTarget();
-        target.send(new DamageEntityEvent(effectorComponent.damage));
-
-        String endId = buildEventID(END_POISON_ID, entity);
-        String applyId = buildEventID(APPLY_POISON_ID, entity);
-
-        if (delayManager.hasDelayedAction(target, endId)) {
-            delayManager.cancelDelayedAction(target, endId);
-            delayManager.addDelayedAction(target, endId, effectorComponent.poisonDuration);
-        } else {
-            inWorldRenderer.addParticleEffect(target, DefenceUris.POISON_PARTICLES);
-            delayManager.addPeriodicAction(target, applyId, POISON_RATE, POISON_RATE);
-            delayManager.addDelayedAction(target, endId, effectorComponent.poisonDuration);
-        }
-    }
-
-    /**
-     * Deals a unit of poison damage to the enemy.
-     * <p>
-     * Filters on {@link GooeyComponent}
-     * Called against the poisoned enemy
-     *
-     * @see PeriodicActionTriggeredEvent
-     */
-    @ReceiveEvent
-    public void onPeriodicActionTriggered(PeriodicActionTriggeredEvent event, EntityRef entity, GooeyComponent enemyComponent) {
-        if (DefenceField.fieldActivated && isApplyEvent(event)) {
-
-            EntityRef effector = getEffectorEntity(event.getActionId());
-            PoisonEffectorComponent effectorComponent = effector.getComponent(PoisonEffectorComponent.class);
-            entity.send(new DamageEntityEvent(effectorComponent.poisonDamage));
-        }
+        poisonEnemy(event.getTarget(), entity, effectorComponent);
     }
 
     /**
-     * Ends the poison effect for an enemy.
+     * Applies the effect to every target in a batch
      * <p>
-     * Filters on {@link GooeyComponent}
-     * Called against the poisoned enemy
+     * Filters on {@link PoisonEffectorComponent}
+     * Sent against the effector
      *
-     * @see DelayedActionTriggeredEvent
+     * @see ApplyEffectBatchEvent
      */
     @ReceiveEvent
-    public void onDelayedActionTriggered(DelayedActionTriggeredEvent event, EntityRef entity, GooeyComponent enemyComponent) {
-        if (isEndEvent(event)) {
-            EntityRef effector = getEffectorEntity(event.getActionId());
-            delayManager.cancelPeriodicAction(entity, buildEventID(APPLY_POISON_ID, effector));
-            inWorldRenderer.removeParticleEffect(entity, DefenceUris.POISON_PARTICLES);
-        }
-    }
-
-    /**
-     * Creates the event ID given the base and the entity to encode
-     *
-     * @param baseId   The base ID string
-     * @param effector The entity id to encode
-     * @return The ID with the entity encoded
-     */
-    private String buildEventID(String baseId, EntityRef effector) {
-        return baseId + "|" + effector.getId();
-    }
-
-    /**
-     * Checks if the event has the correct ID for an apply poison event
-     *
-     * @param event The event to check
-     * @return True if the event ID matches, false otherwise.
-     */
-    private boolean isApplyEvent(PeriodicActionTriggeredEvent event) {
-        return event.getActionId().startsWith(APPLY_POISON_ID);
-    }
-
-    /**
-     * Checks if the event has the correct ID for an end poison event
-     *
-     * @param event The event to check
-     * @return True if the event ID matches, false otherwise.
-     */
-    private boolean isEndEvent(DelayedActionTriggeredEvent event) {
-        return event.getActionId().startsWith(END_POISON_ID);
+    public void onApplyEffectBatch(ApplyEffectBatchEvent event, EntityRef entity, PoisonEffectorComponent effectorComponent) {
+        event.forEachTarget(target -> poisonEnemy(target, entity, effectorComponent));
     }
 
     /**
-     * Gets the entity encoded within the event ID
+     * Deals the initial damage to an enemy and starts, or extends, it's poison.
      *
-     * @param eventID The id to extract from
-     * @return The entity encoded.
+     * @param target            The enemy to poison
+     * @param entity            The effector poisoning the enemy
+     * @param effectorComponent The component of the effector
      */
-    private EntityRef getEffectorEntity(String eventID) {
-        String id = eventID.substring(eventID.indexOf("|") + 1);
-        return entityManager.getEntity(Long.parseLong(id));
+    private void poisonEnemy(EntityRef target, EntityRef entity, PoisonEffectorComponent effectorComponent) {
+        healthSystem.queueDamage(target, effectorComponent.damage);
+        damageOverTimeSystem.applyEffect(target, entity, EffectType.POISON,
+                effectorComponent.poisonDamage, POISON_RATE, effectorComponent.poisonDuration);
     }
 }
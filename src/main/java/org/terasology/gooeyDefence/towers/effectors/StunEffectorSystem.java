@@ -2,56 +2,65 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.gooeyDefence.towers.effectors;
 
-import org.joml.Vector3f;
+import org.terasology.engine.core.Time;
+import org.terasology.engine.entitySystem.entity.EntityManager;
 import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
 import org.terasology.engine.entitySystem.systems.RegisterSystem;
-import org.terasology.engine.logic.delay.DelayManager;
-import org.terasology.engine.logic.delay.DelayedActionTriggeredEvent;
-import org.terasology.engine.logic.location.LocationComponent;
+import org.terasology.engine.entitySystem.systems.UpdateSubscriberSystem;
 import org.terasology.engine.registry.In;
 import org.terasology.engine.utilities.random.FastRandom;
 import org.terasology.engine.utilities.random.Random;
 import org.terasology.gestalt.entitysystem.event.ReceiveEvent;
 import org.terasology.gooeyDefence.DefenceField;
 import org.terasology.gooeyDefence.DefenceUris;
+import org.terasology.gooeyDefence.EnemyManager;
+import org.terasology.gooeyDefence.EnemyStateStore;
 import org.terasology.gooeyDefence.components.GooeyComponent;
-import org.terasology.gooeyDefence.movement.components.BlankPathComponent;
-import org.terasology.gooeyDefence.movement.components.PathComponent;
+import org.terasology.gooeyDefence.events.OnFieldActivated;
 import org.terasology.gooeyDefence.towers.TowerManager;
 import org.terasology.gooeyDefence.towers.components.TowerTargeter;
+import org.terasology.gooeyDefence.towers.events.ApplyEffectBatchEvent;
 import org.terasology.gooeyDefence.towers.events.ApplyEffectEvent;
 import org.terasology.gooeyDefence.visuals.InWorldRenderer;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Briefly pauses an enemy.
- * Does this by swapping the path component for the blank one.
+ * Does this by setting when the stun ends in the {@link EnemyStateStore}, which stops the enemy moving until then.
+ * The enemy's components are left untouched.
+ * <p>
+ * Stuns are not saved, so the stun particles are removed from every enemy when a saved field is loaded.
  *
  * @see StunEffectorComponent
- * @see BlankPathComponent
  * @see TowerManager
  */
 @RegisterSystem
-public class StunEffectorSystem extends BaseComponentSystem {
-    /**
-     * The id to use for the removal of the stun.
-     */
-    private static final String REMOVE_STUN_ID = "removeStun";
-    /**
-     * A list of the path components to re-apply to the enemy once the stun wears off.
-     */
-    private final Map<EntityRef, PathComponent> pathStorage = new HashMap<>();
-
+public class StunEffectorSystem extends BaseComponentSystem implements UpdateSubscriberSystem {
     @In
-    private DelayManager delayManager;
+    private Time time;
     @In
     private Random random = new FastRandom();
 
+    @In
+    private EntityManager entityManager;
     @In
     private InWorldRenderer inWorldRenderer;
+    @In
+    private EnemyManager enemyManager;
+
+    /**
+     * Removes the stun particles from all the enemies, as the stuns themselves were not saved.
+     *
+     * @see OnFieldActivated
+     */
+    @ReceiveEvent
+    public void onFieldActivated(OnFieldActivated event, EntityRef entity) {
+        for (EntityRef enemy : entityManager.getEntitiesWith(GooeyComponent.class)) {
+            if (inWorldRenderer.hasParticleEffect(enemy, DefenceUris.STUN_PARTICLES)) {
+                inWorldRenderer.removeParticleEffect(enemy, DefenceUris.STUN_PARTICLES);
+            }
+        }
+    }
 
     /**
      * Applies the stun effect to a target
@@ -63,16 +72,35 @@ public class StunEffectorSystem extends BaseComponentSystem {
      */
     @ReceiveEvent
     public void onApplyEffect(ApplyEffectEvent event, EntityRef entity, StunEffectorComponent component) {
-        EntityRef target = event.getTarget();
-        if (!pathStorage.containsKey(target) && canStun(event.getDamageMultiplier())) {
+        stunEnemy(event.getTarget(), event.getDamageMultiplier(), component);
+    }
 
-            PathComponent pathComponent = DefenceField.getComponentExtending(target, PathComponent.class);
-            pathStorage.put(target, pathComponent);
-            target.removeComponent(pathComponent.getClass());
+    /**
+     * Applies the stun effect to every target in a batch
+     * <p>
+     * Filters on {@link StunEffectorComponent}
+     * Sent against the effector block
+     *
+     * @see ApplyEffectBatchEvent
+     */
+    @ReceiveEvent
+    public void onApplyEffectBatch(ApplyEffectBatchEvent event, EntityRef entity, StunEffectorComponent component) {
+        event.forEachTarget(target -> stunEnemy(target, event.getDamageMultiplier(), component));
+    }
 
-            Vector3f position = target.getComponent(LocationComponent.class).getWorldPosition(new Vector3f());
-            target.addComponent(new BlankPathComponent(position));
-            delayManager.addDelayedAction(target, REMOVE_STUN_ID, component.stunDuration);
+    /**
+     * Stuns an enemy, if it's not already stunned and the stun chance succeeds.
+     *
+     * @param target           The enemy to stun
+     * @param damageMultiplier The multiplier from the targeter
+     * @param component        The effector stunning the enemy
+     */
+    private void stunEnemy(EntityRef target, float damageMultiplier, StunEffectorComponent component) {
+        EnemyStateStore store = enemyManager.getEnemyStore();
+        int slot = store.getSlot(target);
+        long now = time.getGameTimeInMs();
+        if (slot >= 0 && store.getStunExpiry(slot) <= now && canStun(damageMultiplier)) {
+            store.setStunExpiry(slot, now + component.stunDuration);
             inWorldRenderer.addParticleEffect(target, DefenceUris.STUN_PARTICLES);
         }
     }
@@ -91,20 +119,21 @@ public class StunEffectorSystem extends BaseComponentSystem {
     }
 
     /**
-     * Removes the stun from the enemy
-     * <p>
-     * Filters on {@link GooeyComponent}
-     * Sent against the enemy
-     *
-     * @see DelayedActionTriggeredEvent
+     * Removes the stun particles from every enemy whose stun has ended.
      */
-    @ReceiveEvent(components = GooeyComponent.class)
-    public void onDelayedActionTriggered(DelayedActionTriggeredEvent event, EntityRef entity) {
-        if (event.getActionId().equals(REMOVE_STUN_ID)) {
-            PathComponent pathComponent = pathStorage.remove(entity);
-            entity.removeComponent(DefenceField.getComponentExtending(entity, PathComponent.class).getClass());
-            entity.addComponent(pathComponent);
-            inWorldRenderer.removeParticleEffect(entity, DefenceUris.STUN_PARTICLES);
+    @Override
+    public void update(float delta) {
+        if (!DefenceField.fieldActivated) {
+            return;
+        }
+        EnemyStateStore store = enemyManager.getEnemyStore();
+        long now = time.getGameTimeInMs();
+        for (int slot = 0; slot < store.size(); slot++) {
+            long expiry = store.getStunExpiry(slot);
+            if (expiry != 0 && expiry <= now) {
+                store.setStunExpiry(slot, 0);
+                inWorldRenderer.removeParticleEffect(store.getEntity(slot), DefenceUris.STUN_PARTICLES);
+            }
         }
     }
 }
@@ -8,6 +8,7 @@ import org.terasology.engine.entitySystem.systems.RegisterSystem;
 import org.terasology.engine.rendering.logic.SkeletalMeshComponent;
 import org.terasology.gestalt.entitysystem.event.ReceiveEvent;
 import org.terasology.gooeyDefence.towers.TowerManager;
+import org.terasology.gooeyDefence.towers.events.ApplyEffectBatchEvent;
 import org.terasology.gooeyDefence.towers.events.ApplyEffectEvent;
 import org.terasology.gooeyDefence.towers.events.RemoveEffectEvent;
 
@@ -30,10 +31,32 @@ public class VisualEffectorSystem extends BaseComponentSystem {
      */
     @ReceiveEvent
     public void onApplyEffect(ApplyEffectEvent event, EntityRef entity, VisualEffectorComponent component) {
-        SkeletalMeshComponent targetMesh = event.getTarget().getComponent(SkeletalMeshComponent.class);
-        targetMesh.scale.mul(2f);
+        growTarget(event.getTarget());
+    }
 
-        event.getTarget().saveComponent(targetMesh);
+    /**
+     * Applies the increased scale to every enemy in a batch.
+     * <p>
+     * Filters on {@link VisualEffectorComponent}
+     *
+     * @see ApplyEffectBatchEvent
+     */
+    @ReceiveEvent
+    public void onApplyEffectBatch(ApplyEffectBatchEvent event, EntityRef entity, VisualEffectorComponent component) {
+        event.forEachTarget(this::growTarget);
+    }
+
+    /**
+     * Doubles the scale of an enemy.
+     *
+     * @param target The enemy to grow
+     */
+    private void growTarget(EntityRef target) {
+        SkeletalMeshComponent targetMesh = target.getComponent(SkeletalMeshComponent.class);
+        if (targetMesh != null) {
+            targetMesh.scale.mul(2f);
+            target.saveComponent(targetMesh);
+        }
     }
 
     /**
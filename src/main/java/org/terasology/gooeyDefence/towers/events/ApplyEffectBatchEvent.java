@@ -0,0 +1,91 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.gooeyDefence.towers.events;
+
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.gestalt.entitysystem.event.Event;
+import org.terasology.gooeyDefence.towers.components.TowerEffector;
+import org.terasology.gooeyDefence.towers.components.TowerTargeter;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Event sent to apply an effect to many targets at once.
+ * Sent against the Effector blocks in the tower, once per shot rather than once per target.
+ * Every target in a shot shares the same damage multiplier.
+ * <p>
+ * Only the first {@link #size()} entries of the array are in use.
+ *
+ * @see ApplyEffectEvent
+ * @see TowerEffector
+ */
+public class ApplyEffectBatchEvent implements Event {
+    private final float multiplier;
+    private EntityRef[] targets;
+    private int count;
+
+    /**
+     * Creates an empty batch.
+     *
+     * @param capacity   The number of targets expected
+     * @param multiplier The moderating damage multiplier to use for every target
+     */
+    public ApplyEffectBatchEvent(int capacity, float multiplier) {
+        this.multiplier = multiplier;
+        targets = new EntityRef[Math.max(1, capacity)];
+    }
+
+    /**
+     * Adds a target to the batch.
+     *
+     * @param target The enemy to target
+     */
+    public void add(EntityRef target) {
+        if (count == targets.length) {
+            targets = Arrays.copyOf(targets, count * 2);
+        }
+        targets[count++] = target;
+    }
+
+    /**
+     * @return The number of targets in the batch
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return True if there are no targets in the batch
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * @param index The index of the target, less than {@link #size()}
+     * @return The enemy being targeted
+     */
+    public EntityRef getTarget(int index) {
+        return targets[index];
+    }
+
+    /**
+     * Calls the consumer with every target in the batch, in the order they were added.
+     *
+     * @param consumer The consumer to call with each target
+     */
+    public void forEachTarget(Consumer<EntityRef> consumer) {
+        for (int i = 0; i < count; i++) {
+            consumer.accept(targets[i]);
+        }
+    }
+
+    /**
+     * @return The moderating damage multiplier to use for every target
+     * @see TowerTargeter#getMultiplier()
+     */
+    public float getDamageMultiplier() {
+        return multiplier;
+    }
+}
@@ -31,6 +31,7 @@ import java.util.Set;
  */
 public class SelectEnemiesEvent implements Event {
     private final Set<EntityRef> targets = new HashSet<>();
+    private boolean deferred;
 
     /**
      * This method should only be used by the sending system after the event has been sent and processed
@@ -54,4 +55,19 @@ public class SelectEnemiesEvent implements Event {
     public void addToList(EntityRef target) {
         this.targets.add(target);
     }
+
+    /**
+     * Marks the targets of this shot as being found later, when the shot lands.
+     * The tower will not attack any enemies until then.
+     */
+    public void deferTargets() {
+        this.deferred = true;
+    }
+
+    /**
+     * @return True if the targets will be found when the shot lands, rather than now
+     */
+    public boolean isDeferred() {
+        return deferred;
+    }
 }
@@ -26,8 +26,6 @@ import org.terasology.gooeyDefence.towers.TowerManager;
 import org.terasology.gooeyDefence.towers.events.SelectEnemiesEvent;
 import org.terasology.gooeyDefence.visuals.InWorldRenderer;
 
-import java.util.Set;
-
 /**
  * Handles selecting the enemies for the {@link AoeTargeterComponent}.
  * <p>
@@ -54,9 +52,9 @@ public class AoeTargeterSystem extends BaseTargeterSystem {
      */
     @ReceiveEvent
     public void onSelectEnemies(SelectEnemiesEvent event, EntityRef entity, LocationComponent locationComponent, AoeTargeterComponent targeterComponent) {
-        Set<EntityRef> targets = enemyManager.getEnemiesInRange(locationComponent.getWorldPosition(new Vector3f()), targeterComponent.range);
-        event.addToList(targets);
-        if (!targets.isEmpty()) {
+        enemyManager.getEnemiesInRange(locationComponent.getWorldPosition(new Vector3f()), targeterComponent.range, enemyBuffer);
+        event.addToList(enemyBuffer);
+        if (!enemyBuffer.isEmpty()) {
             inWorldRenderer.displayExpandingSphere(locationComponent.getWorldPosition(new Vector3f()), (float) targeterComponent.attackSpeed / 1000, targeterComponent.range * 2 + 1);
         }
     }
@@ -16,23 +16,20 @@
 package org.terasology.gooeyDefence.towers.targeters;
 
 import org.joml.Vector3f;
+import org.terasology.engine.core.Time;
 import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
 import org.terasology.engine.logic.location.LocationComponent;
-import org.terasology.gooeyDefence.DefenceField;
+import org.terasology.engine.registry.In;
 import org.terasology.gooeyDefence.EnemyManager;
-import org.terasology.gooeyDefence.health.HealthComponent;
-import org.terasology.gooeyDefence.movement.components.PathComponent;
+import org.terasology.gooeyDefence.EnemyStateStore;
 import org.terasology.gooeyDefence.towers.SelectionMethod;
 import org.terasology.gooeyDefence.towers.TowerManager;
 import org.terasology.gooeyDefence.towers.components.TowerTargeter;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
-import java.util.Set;
 
 /**
  * A base system for tower targeters that provides common methods.
@@ -42,68 +39,92 @@ import java.util.Set;
  * @see TowerManager
  */
 public class BaseTargeterSystem extends BaseComponentSystem {
+    /**
+     * A reusable buffer for enemy range queries.
+     * Cleared and refilled by each query, so the contents should not be kept between shots.
+     */
+    protected final List<EntityRef> enemyBuffer = new ArrayList<>();
+    /**
+     * Picks targets from the enemies in range.
+     */
+    private final TargetSelector targetSelector = new TargetSelector();
+    /**
+     * Reused while checking the position of non-enemy targets.
+     */
+    private final Vector3f positionBuffer = new Vector3f();
+
+    @In
+    protected Time time;
 
     /**
      * Picks the target from all within range based upon the selection method
+     * <p>
+     * The health and remaining steps of each enemy are read from the enemy store once, rather than from it's components.
      *
      * @param targets         All enemies within range
      * @param selectionMethod The selection method
-     * @return The single target, according to the selection method
+     * @param store           The store to read the enemy state from
+     * @return The single target according to the selection method, or the null entity if there were no enemies
+     * @see TargetSelector#selectSingle(Collection, SelectionMethod, EnemyStateStore)
      */
-    protected EntityRef getSingleTarget(Set<EntityRef> targets, SelectionMethod selectionMethod) {
-        Comparator<EntityRef> comparator;
-        switch (selectionMethod) {
-            case RANDOM:
-                List<EntityRef> listTargets = new ArrayList<>(targets);
-                Collections.shuffle(listTargets);
-                return listTargets.get(0);
-            case WEAK:
-                comparator = (first, second) -> {
-                    HealthComponent firstComponent = first.getComponent(HealthComponent.class);
-                    HealthComponent secondComponent = second.getComponent(HealthComponent.class);
-                    return firstComponent.health - secondComponent.health;
-                };
-                break;
-            case FIRST:
-                comparator = (first, second) -> {
-                    PathComponent firstComponent = DefenceField.getComponentExtending(first, PathComponent.class);
-                    PathComponent secondComponent = DefenceField.getComponentExtending(second, PathComponent.class);
-                    return firstComponent.getStep() - secondComponent.getStep();
-                };
-                break;
-            case STRONG:
-                comparator = (first, second) -> {
-                    HealthComponent firstComponent = first.getComponent(HealthComponent.class);
-                    HealthComponent secondComponent = second.getComponent(HealthComponent.class);
-                    return secondComponent.health - firstComponent.health;
-                };
-                break;
-            default:
-                throw new EnumConstantNotPresentException(SelectionMethod.class, selectionMethod.toString());
-        }
-        Optional<EntityRef> chosenEnemy = targets.stream().min(comparator);
-        return chosenEnemy.orElse(EntityRef.NULL);
+    protected EntityRef getSingleTarget(Collection<EntityRef> targets, SelectionMethod selectionMethod, EnemyStateStore store) {
+        return targetSelector.selectSingle(targets, selectionMethod, store);
+    }
+
+    /**
+     * Gets all the enemies within the targeter's range.
+     * The result of the last search is reused if no enemies could have entered or left the range since.
+     *
+     * @param targeterPos       The position of the targeter block
+     * @param minRange          The inner radius of the range. Zero to include all enemies within the targeter's range
+     * @param targeterComponent The targeter component on the targeter
+     * @param enemyManager      The enemy manager to search with
+     * @return The enemies in range. Only valid until the next search by the same targeter.
+     * @see TargetTracker
+     */
+    protected List<EntityRef> getEnemiesInRange(Vector3f targeterPos, float minRange, TowerTargeter targeterComponent,
+                                                EnemyManager enemyManager) {
+        return targeterComponent.getTracker().getEnemiesInRange(
+                enemyManager,
+                targeterPos,
+                minRange,
+                targeterComponent.range,
+                time.getGameTimeInMs(),
+                targeterComponent.reacquireInterval);
     }
 
     /**
      * Checks if the enemy from last round can be reused.
+     * Enemies are checked using their position in the store, other entities using their location.
+     * Enemies that are already dying are not reused.
      *
+     * @param target            The enemy to check
      * @param targeterPos       The position of the target
      * @param targeterComponent The targeter
+     * @param store             The store holding the enemy positions
      * @return True if the targeter can attack the enemy
      */
-    private boolean canUseTarget(EntityRef target, Vector3f targeterPos, TowerTargeter targeterComponent) {
-        return target.exists()
-                && target.getComponent(LocationComponent.class)
-                .getWorldPosition(new Vector3f())
-                .distance(targeterPos) < targeterComponent.range;
+    private boolean canUseTarget(EntityRef target, Vector3f targeterPos, TowerTargeter targeterComponent, EnemyStateStore store) {
+        if (!target.exists()) {
+            return false;
+        }
+        float rangeSqr = targeterComponent.range * targeterComponent.range;
+        int slot = store.getSlot(target);
+        if (slot >= 0) {
+            return !store.hasStatus(slot, EnemyStateStore.STATUS_DYING)
+                    && store.distanceSquared(slot, targeterPos) < rangeSqr;
+        }
+        return target.getComponent(LocationComponent.class)
+                .getWorldPosition(positionBuffer)
+                .distanceSquared(targeterPos) < rangeSqr;
     }
 
     /**
      * Gets a single targetable enemy within the tower's range
      * <p>
      * Attempts to use the entity that was targeted last round.
-     * If that is not possible it picks an enemy in range based on the selection method listed
+     * If that is not possible it picks an enemy in range based on the selection method listed.
+     * The first enemy is found from the remaining steps kept in the enemy store, rather than by sorting every enemy.
      *
      * @param targeterPos       The position of the targeter block
      * @param targeterComponent The targeter component on the targeter
@@ -113,11 +134,15 @@ public class BaseTargeterSystem extends BaseComponentSystem {
     protected EntityRef getTarget(Vector3f targeterPos, SingleTargeterComponent targeterComponent, EnemyManager enemyManager) {
         EntityRef target = targeterComponent.lastTarget;
 
-        if (!canUseTarget(target, targeterPos, targeterComponent)) {
-            Set<EntityRef> enemiesInRange = enemyManager.getEnemiesInRange(
-                    targeterPos,
-                    targeterComponent.range);
-            target = getSingleTarget(enemiesInRange, targeterComponent.selectionMethod);
+        if (!canUseTarget(target, targeterPos, targeterComponent, enemyManager.getEnemyStore())) {
+            if (targeterComponent.selectionMethod == SelectionMethod.FIRST) {
+                target = enemyManager.getMostAdvancedEnemyInRange(targeterPos, 0, targeterComponent.range);
+            } else {
+                target = getSingleTarget(
+                        getEnemiesInRange(targeterPos, 0, targeterComponent, enemyManager),
+                        targeterComponent.selectionMethod,
+                        enemyManager.getEnemyStore());
+            }
         }
         return target;
     }
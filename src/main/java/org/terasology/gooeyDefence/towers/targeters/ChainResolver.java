@@ -0,0 +1,223 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.gooeyDefence.towers.targeters;
+
+import org.joml.Vector3f;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.gooeyDefence.EnemyManager;
+import org.terasology.gooeyDefence.EnemyStateStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Works out which enemies a chain attack jumps between.
+ * <p>
+ * A chain can't reach further than the chain range multiplied by the number of jumps, so every enemy it could reach
+ * is fetched with a single range query around the first target. Those enemies are then put into a small local grid,
+ * with cells the size of a single jump. Each jump only has to check the cells next to the last enemy hit to find
+ * the nearest enemy that hasn't been hit yet.
+ * <p>
+ * The arrays are reused between calls, so a resolver should only be used by one system.
+ *
+ * @see ChainTargeterSystem
+ */
+public class ChainResolver {
+    private static final int INITIAL_CAPACITY = 32;
+
+    private final List<EntityRef> neighbourhood = new ArrayList<>();
+    private final Vector3f startPosition = new Vector3f();
+    private EntityRef[] enemies = new EntityRef[INITIAL_CAPACITY];
+    private float[] positionX = new float[INITIAL_CAPACITY];
+    private float[] positionY = new float[INITIAL_CAPACITY];
+    private float[] positionZ = new float[INITIAL_CAPACITY];
+    private boolean[] hit = new boolean[INITIAL_CAPACITY];
+    /**
+     * The indices of the enemies, ordered by the cell they are in.
+     */
+    private int[] cellItems = new int[INITIAL_CAPACITY];
+    /**
+     * The index in {@link #cellItems} that each cell starts at. The cell after it marks where it ends.
+     */
+    private int[] cellStarts = new int[0];
+    /**
+     * The next free index in {@link #cellItems} for each cell, used while sorting.
+     */
+    private int[] cellFill = new int[0];
+    private int[] enemyCells = new int[INITIAL_CAPACITY];
+    private int count;
+    private int cellsPerSide;
+    private float originX;
+    private float originZ;
+    private float cellSize;
+
+    /**
+     * Finds the chain of enemies starting at the given enemy.
+     * Each jump goes to the nearest enemy, measured from the last enemy hit, that hasn't already been hit.
+     *
+     * @param start        The enemy to start chaining from
+     * @param maxChain     The maximum number of enemies to chain to, not including the start
+     * @param chainRange   The maximum length of each chain link
+     * @param enemyManager The enemy manager to fetch the enemies from
+     * @param dest         The list to add the chained enemies to, in order. The start enemy is added first.
+     */
+    public void resolve(EntityRef start, int maxChain, float chainRange, EnemyManager enemyManager, List<EntityRef> dest) {
+        dest.add(start);
+        EnemyStateStore store = enemyManager.getEnemyStore();
+        int startSlot = store.getSlot(start);
+        if (startSlot < 0 || maxChain <= 0 || chainRange <= 0) {
+            return;
+        }
+        store.getPosition(startSlot, startPosition);
+        enemyManager.getEnemiesInRange(startPosition, chainRange * maxChain, neighbourhood);
+        buildGrid(store, chainRange * maxChain, chainRange);
+
+        int current = indexOf(start);
+        if (current < 0) {
+            clear();
+            return;
+        }
+        hit[current] = true;
+        float rangeSqr = chainRange * chainRange;
+        for (int i = 0; i < maxChain; i++) {
+            int next = findNearest(current, rangeSqr);
+            if (next < 0) {
+                break;
+            }
+            hit[next] = true;
+            dest.add(enemies[next]);
+            current = next;
+        }
+        clear();
+    }
+
+    /**
+     * Copies the fetched enemies into the arrays, and sorts them into cells.
+     *
+     * @param store      The store to read the positions from
+     * @param radius     The radius of the area the enemies were fetched from
+     * @param chainRange The maximum length of each chain link, used as the cell size
+     */
+    private void buildGrid(EnemyStateStore store, float radius, float chainRange) {
+        ensureCapacity(neighbourhood.size());
+        count = 0;
+        for (EntityRef enemy : neighbourhood) {
+            int slot = store.getSlot(enemy);
+            enemies[count] = enemy;
+            positionX[count] = store.getPositionX(slot);
+            positionY[count] = store.getPositionY(slot);
+            positionZ[count] = store.getPositionZ(slot);
+            hit[count] = false;
+            count++;
+        }
+        neighbourhood.clear();
+
+        cellSize = chainRange;
+        originX = startPosition.x() - radius;
+        originZ = startPosition.z() - radius;
+        cellsPerSide = (int) Math.ceil(radius * 2 / cellSize) + 1;
+        int cellCount = cellsPerSide * cellsPerSide;
+        if (cellStarts.length < cellCount + 1) {
+            cellStarts = new int[cellCount + 1];
+            cellFill = new int[cellCount + 1];
+        } else {
+            Arrays.fill(cellStarts, 0, cellCount + 1, 0);
+        }
+
+        /* Counting sort of the enemies by cell */
+        for (int i = 0; i < count; i++) {
+            int cell = cellCoordinate(positionX[i], originX) * cellsPerSide + cellCoordinate(positionZ[i], originZ);
+            enemyCells[i] = cell;
+            cellStarts[cell + 1]++;
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            cellStarts[cell + 1] += cellStarts[cell];
+        }
+        System.arraycopy(cellStarts, 0, cellFill, 0, cellCount);
+        for (int i = 0; i < count; i++) {
+            cellItems[cellFill[enemyCells[i]]++] = i;
+        }
+    }
+
+    /**
+     * Finds the nearest enemy within range of another that hasn't already been hit.
+     * As the cells are the size of the range, only the neighbouring cells need to be checked.
+     *
+     * @param from     The index of the enemy to measure from
+     * @param rangeSqr The square of the maximum distance
+     * @return The index of the nearest enemy, or -1 if there are none in range
+     */
+    private int findNearest(int from, float rangeSqr) {
+        int cellX = cellCoordinate(positionX[from], originX);
+        int cellZ = cellCoordinate(positionZ[from], originZ);
+        int nearest = -1;
+        float nearestSqr = rangeSqr;
+        for (int x = Math.max(0, cellX - 1); x <= Math.min(cellsPerSide - 1, cellX + 1); x++) {
+            for (int z = Math.max(0, cellZ - 1); z <= Math.min(cellsPerSide - 1, cellZ + 1); z++) {
+                int cell = x * cellsPerSide + z;
+                for (int item = cellStarts[cell]; item < cellStarts[cell + 1]; item++) {
+                    int candidate = cellItems[item];
+                    if (hit[candidate]) {
+                        continue;
+                    }
+                    float dx = positionX[candidate] - positionX[from];
+                    float dy = positionY[candidate] - positionY[from];
+                    float dz = positionZ[candidate] - positionZ[from];
+                    float distanceSqr = dx * dx + dy * dy + dz * dz;
+                    if (distanceSqr <= nearestSqr) {
+                        nearest = candidate;
+                        nearestSqr = distanceSqr;
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * @param enemy The enemy to look for
+     * @return The index of the enemy in the arrays, or -1 if it wasn't fetched
+     */
+    private int indexOf(EntityRef enemy) {
+        for (int i = 0; i < count; i++) {
+            if (enemies[i].equals(enemy)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Converts a world coordinate into a cell coordinate, clamping it to the grid.
+     *
+     * @param value  The coordinate in the world, along either the x or z axis
+     * @param origin The world coordinate the grid starts at, along that same axis
+     * @return The coordinate of the cell along that same axis
+     */
+    private int cellCoordinate(float value, float origin) {
+        int cell = (int) Math.floor((value - origin) / cellSize);
+        return Math.min(Math.max(cell, 0), cellsPerSide - 1);
+    }
+
+    /**
+     * Drops the references to the enemies so that destroyed enemies aren't held onto.
+     */
+    private void clear() {
+        Arrays.fill(enemies, 0, count, null);
+        count = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > enemies.length) {
+            int newCapacity = Math.max(capacity, enemies.length * 2);
+            enemies = Arrays.copyOf(enemies, newCapacity);
+            positionX = Arrays.copyOf(positionX, newCapacity);
+            positionY = Arrays.copyOf(positionY, newCapacity);
+            positionZ = Arrays.copyOf(positionZ, newCapacity);
+            hit = Arrays.copyOf(hit, newCapacity);
+            cellItems = Arrays.copyOf(cellItems, newCapacity);
+            enemyCells = Arrays.copyOf(enemyCells, newCapacity);
+        }
+    }
+}
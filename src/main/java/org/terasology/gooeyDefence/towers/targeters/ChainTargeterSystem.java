@@ -15,7 +15,6 @@
  */
 package org.terasology.gooeyDefence.towers.targeters;
 
-import com.google.common.collect.Sets;
 import org.joml.Vector3f;
 import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.engine.entitySystem.systems.RegisterSystem;
@@ -26,7 +25,7 @@ import org.terasology.gooeyDefence.EnemyManager;
 import org.terasology.gooeyDefence.towers.TowerManager;
 import org.terasology.gooeyDefence.towers.events.SelectEnemiesEvent;
 
-import java.util.Set;
+import java.util.List;
 
 /**
  * Targets a base enemy and then chains off to nearby enemies as well.
@@ -39,6 +38,7 @@ public class ChainTargeterSystem extends BaseTargeterSystem {
 
     @In
     private EnemyManager enemyManager;
+    private final ChainResolver chainResolver = new ChainResolver();
 
     /**
      * Determine which enemies should be attacked.
@@ -64,29 +64,12 @@ public class ChainTargeterSystem extends BaseTargeterSystem {
      * @param start      The enemy to start chaining from
      * @param maxChain   The maximum number of enemies to chain to.
      * @param chainRange The maximum length of each chain link
-     * @return A set containing all chained enemies.
+     * @return A list containing all chained enemies, in the order they were chained to.
+     * @see ChainResolver
      */
-    private Set<EntityRef> chainToNearby(EntityRef start, int maxChain, float chainRange) {
-        Vector3f position = start.getComponent(LocationComponent.class).getWorldPosition(new Vector3f());
-        Set<EntityRef> result = Sets.newHashSet(start);
-
-        for (int i = 0; i < maxChain; i++) {
-            Set<EntityRef> enemies = enemyManager.getEnemiesInRange(position, chainRange);
-            enemies = Sets.difference(enemies, result);
-            if (enemies.isEmpty()) {
-                return result;
-            }
-            EntityRef closestEnemy = enemies.stream().min((first, second) -> {
-                LocationComponent firstComponent = first.getComponent(LocationComponent.class);
-                LocationComponent secondComponent = second.getComponent(LocationComponent.class);
-                float firstDistance = firstComponent.getWorldPosition(new Vector3f()).distanceSquared(position);
-                float secondDistance = secondComponent.getWorldPosition(new Vector3f()).distanceSquared(position);
-                return Float.compare(firstDistance, secondDistance);
-            }).orElse(EntityRef.NULL);
-            result.add(closestEnemy);
-        }
-        return result;
+    private List<EntityRef> chainToNearby(EntityRef start, int maxChain, float chainRange) {
+        enemyBuffer.clear();
+        chainResolver.resolve(start, maxChain, chainRange, enemyManager, enemyBuffer);
+        return enemyBuffer;
     }
-
-
 }
@@ -21,14 +21,11 @@ import org.terasology.engine.entitySystem.systems.RegisterSystem;
 import org.terasology.engine.logic.location.LocationComponent;
 import org.terasology.engine.registry.In;
 import org.terasology.gestalt.entitysystem.event.ReceiveEvent;
-import org.terasology.gooeyDefence.EnemyManager;
 import org.terasology.gooeyDefence.towers.TowerManager;
 import org.terasology.gooeyDefence.towers.events.SelectEnemiesEvent;
 import org.terasology.gooeyDefence.visuals.InWorldRenderer;
 import org.terasology.gooeyDefence.visuals.components.SplashBulletComponent;
 
-import java.util.Set;
-
 /**
  * Targets in an AOE around a distant enemy.
  * This tower cannot target nearby enemies, same as {@link SniperTargeterComponent}.
@@ -40,8 +37,6 @@ import java.util.Set;
 @RegisterSystem
 public class MissileTargeterSystem extends SniperTargeterSystem {
 
-    @In
-    private EnemyManager enemyManager;
     @In
     private InWorldRenderer inWorldRenderer;
 
@@ -60,13 +55,12 @@ public class MissileTargeterSystem extends SniperTargeterSystem {
         EntityRef target = getTarget(worldPos, targeterComponent);
 
         if (target.exists()) {
-            Vector3f targetPos = target.getComponent(LocationComponent.class).getWorldPosition(new Vector3f());
-            Set<EntityRef> targets = enemyManager.getEnemiesInRange(targetPos, targeterComponent.splashRange);
-            event.addToList(targets);
+            /* The enemies in the splash are found when the bullet lands */
+            event.deferTargets();
             inWorldRenderer.shootBulletTowards(
                     target,
                     locationComponent.getWorldPosition(new Vector3f()),
-                    new SplashBulletComponent(targeterComponent.splashRange));
+                    new SplashBulletComponent(targeterComponent.splashRange, entity));
         }
         targeterComponent.lastTarget = target;
     }
@@ -15,7 +15,6 @@
  */
 package org.terasology.gooeyDefence.towers.targeters;
 
-import com.google.common.collect.Sets;
 import org.joml.Vector3f;
 import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.engine.entitySystem.systems.RegisterSystem;
@@ -23,12 +22,12 @@ import org.terasology.engine.logic.location.LocationComponent;
 import org.terasology.engine.registry.In;
 import org.terasology.gestalt.entitysystem.event.ReceiveEvent;
 import org.terasology.gooeyDefence.EnemyManager;
+import org.terasology.gooeyDefence.EnemyStateStore;
+import org.terasology.gooeyDefence.towers.SelectionMethod;
 import org.terasology.gooeyDefence.towers.TowerManager;
 import org.terasology.gooeyDefence.towers.events.SelectEnemiesEvent;
 import org.terasology.gooeyDefence.visuals.InWorldRenderer;
 
-import java.util.Set;
-
 /**
  * Selects a single target from far away. The targeter cannot select nearby enemies.
  *
@@ -64,7 +63,8 @@ public class SniperTargeterSystem extends BaseTargeterSystem {
     }
 
     /**
-     * Checks if the given enemy can be targeted
+     * Checks if the given enemy can be targeted.
+     * Enemies are checked using their position in the enemy store. Enemies that are already dying can't be targeted.
      *
      * @param target            The enemy to check
      * @param targeterPos       The position of the target
@@ -72,9 +72,10 @@ public class SniperTargeterSystem extends BaseTargeterSystem {
      * @return True if the targeter can attack the enemy
      */
     private boolean canUseTarget(EntityRef target, Vector3f targeterPos, SniperTargeterComponent targeterComponent) {
-        if (target.exists()) {
-            Vector3f enemyLocation = target.getComponent(LocationComponent.class).getWorldPosition(new Vector3f());
-            float enemyDistance = targeterPos.distanceSquared(enemyLocation);
+        EnemyStateStore store = enemyManager.getEnemyStore();
+        int slot = store.getSlot(target);
+        if (target.exists() && slot >= 0 && !store.hasStatus(slot, EnemyStateStore.STATUS_DYING)) {
+            float enemyDistance = store.distanceSquared(slot, targeterPos);
             return enemyDistance < targeterComponent.range * targeterComponent.range
                     && enemyDistance > targeterComponent.minimumRange * targeterComponent.minimumRange;
         } else {
@@ -95,12 +96,14 @@ public class SniperTargeterSystem extends BaseTargeterSystem {
     protected EntityRef getTarget(Vector3f targeterPos, SniperTargeterComponent targeterComponent) {
         EntityRef target = targeterComponent.lastTarget;
         if (!canUseTarget(target, targeterPos, targeterComponent)) {
-
-            Set<EntityRef> outerEnemies = enemyManager.getEnemiesInRange(targeterPos, targeterComponent.range);
-            Set<EntityRef> innerEnemies = enemyManager.getEnemiesInRange(targeterPos, targeterComponent.minimumRange);
-            Set<EntityRef> inRangeEnemies = Sets.difference(outerEnemies, innerEnemies);
-
-            target = getSingleTarget(inRangeEnemies, targeterComponent.selectionMethod);
+            if (targeterComponent.selectionMethod == SelectionMethod.FIRST) {
+                target = enemyManager.getMostAdvancedEnemyInRange(targeterPos, targeterComponent.minimumRange, targeterComponent.range);
+            } else {
+                target = getSingleTarget(
+                        getEnemiesInRange(targeterPos, targeterComponent.minimumRange, targeterComponent, enemyManager),
+                        targeterComponent.selectionMethod,
+                        enemyManager.getEnemyStore());
+            }
         }
         return target;
     }
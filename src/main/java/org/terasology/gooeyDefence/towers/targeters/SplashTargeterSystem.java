@@ -54,13 +54,13 @@ public class SplashTargeterSystem extends BaseTargeterSystem {
         EntityRef target = getTarget(locationComponent.getWorldPosition(new Vector3f()), targeterComponent, enemyManager);
 
         if (target.exists()) {
-            LocationComponent targetLocation = target.getComponent(LocationComponent.class);
-            event.addToList(enemyManager.getEnemiesInRange(targetLocation.getWorldPosition(new Vector3f()), targeterComponent.splashRange));
+            /* The enemies in the splash are found when the bullet lands */
+            event.deferTargets();
 
             inWorldRenderer.shootBulletTowards(
                     target,
                     locationComponent.getWorldPosition(new Vector3f()),
-                    new SplashBulletComponent(targeterComponent.splashRange));
+                    new SplashBulletComponent(targeterComponent.splashRange, entity));
         }
 
         targeterComponent.lastTarget = target;
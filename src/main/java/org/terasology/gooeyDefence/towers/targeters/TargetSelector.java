@@ -0,0 +1,139 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.gooeyDefence.towers.targeters;
+
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.utilities.random.FastRandom;
+import org.terasology.engine.utilities.random.Random;
+import org.terasology.gooeyDefence.EnemyStateStore;
+import org.terasology.gooeyDefence.towers.SelectionMethod;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Picks targets from a set of candidates according to a {@link SelectionMethod}.
+ * <p>
+ * The sort key of each candidate is read from the {@link EnemyStateStore} exactly once, into a primitive array.
+ * The target is then found with one linear pass. The first enemy is the one with the fewest remaining steps to the
+ * shrine, which can be compared between enemies on different paths.
+ * A random target is picked with reservoir sampling, so the candidates are never copied or shuffled.
+ * <p>
+ * Candidates that are not in the store are ignored. The arrays are reused between calls, so a selector should
+ * only be used by one system.
+ *
+ * @see BaseTargeterSystem
+ */
+public class TargetSelector {
+    private static final int INITIAL_CAPACITY = 32;
+
+    private final Random random = new FastRandom();
+    private EntityRef[] candidates = new EntityRef[INITIAL_CAPACITY];
+    /**
+     * The sort key of each candidate. Lower keys are better targets.
+     */
+    private int[] keys = new int[INITIAL_CAPACITY];
+    private int count;
+
+    /**
+     * Picks the best target from the candidates.
+     *
+     * @param targets         All enemies that could be targeted
+     * @param selectionMethod The selection method
+     * @param store           The store to read the enemy state from
+     * @return The best target, or the null entity if there were no enemies to pick from
+     */
+    public EntityRef selectSingle(Collection<EntityRef> targets, SelectionMethod selectionMethod, EnemyStateStore store) {
+        if (selectionMethod == SelectionMethod.RANDOM) {
+            return selectRandom(targets, store);
+        }
+        extractKeys(targets, selectionMethod, store);
+        int best = -1;
+        int bestKey = Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            if (keys[i] < bestKey || best < 0) {
+                bestKey = keys[i];
+                best = i;
+            }
+        }
+        EntityRef chosen = best < 0 ? EntityRef.NULL : candidates[best];
+        clearCandidates();
+        return chosen;
+    }
+
+    /**
+     * Picks a single random enemy from the candidates with reservoir sampling.
+     *
+     * @param targets The enemies to pick from
+     * @param store   The store the enemies must be in
+     * @return The random enemy, or the null entity if there were none
+     */
+    private EntityRef selectRandom(Collection<EntityRef> targets, EnemyStateStore store) {
+        EntityRef chosen = EntityRef.NULL;
+        int seen = 0;
+        for (EntityRef target : targets) {
+            if (store.getSlot(target) >= 0) {
+                seen++;
+                if (random.nextInt(seen) == 0) {
+                    chosen = target;
+                }
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Reads the sort key of every candidate from the store.
+     *
+     * @param targets         The enemies to read
+     * @param selectionMethod The selection method, which decides the key
+     * @param store           The store to read from
+     */
+    private void extractKeys(Collection<EntityRef> targets, SelectionMethod selectionMethod, EnemyStateStore store) {
+        ensureCapacity(targets.size());
+        count = 0;
+        for (EntityRef target : targets) {
+            int slot = store.getSlot(target);
+            if (slot >= 0) {
+                candidates[count] = target;
+                keys[count] = getKey(slot, selectionMethod, store);
+                count++;
+            }
+        }
+    }
+
+    /**
+     * @param slot            The slot of the enemy
+     * @param selectionMethod The selection method
+     * @param store           The store holding the enemy
+     * @return The sort key of the enemy. Lower keys are better targets.
+     */
+    private int getKey(int slot, SelectionMethod selectionMethod, EnemyStateStore store) {
+        switch (selectionMethod) {
+            case WEAK:
+                return store.getHealth(slot);
+            case STRONG:
+                return -store.getHealth(slot);
+            case FIRST:
+                return store.getRemainingSteps(slot);
+            default:
+                throw new EnumConstantNotPresentException(SelectionMethod.class, selectionMethod.toString());
+        }
+    }
+
+    /**
+     * Drops the references to the candidates so that destroyed enemies aren't held onto.
+     */
+    private void clearCandidates() {
+        Arrays.fill(candidates, 0, count, null);
+        count = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > candidates.length) {
+            int newCapacity = Math.max(capacity, candidates.length * 2);
+            candidates = Arrays.copyOf(candidates, newCapacity);
+            keys = Arrays.copyOf(keys, newCapacity);
+        }
+    }
+}
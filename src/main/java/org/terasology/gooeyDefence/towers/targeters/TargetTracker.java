@@ -0,0 +1,95 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.gooeyDefence.towers.targeters;
+
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.gooeyDefence.EnemyManager;
+import org.terasology.gooeyDefence.EnemyStateStore;
+import org.terasology.gooeyDefence.towers.components.TowerTargeter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Remembers every enemy in the grid buckets around a targeter, so that later shots can skip the grid query.
+ * <p>
+ * The enemies are remembered whether or not they were in range, and reused as long as the query is the same,
+ * no enemy has entered or left the buckets, and the targeter's {@link TowerTargeter#reacquireInterval} has not
+ * passed. Every call re-checks all of them against the range using their squared distance in the store,
+ * so enemies that move into range within their bucket are still found.
+ *
+ * @see EnemyManager#getRangeStamp(Vector3fc, float)
+ * @see EnemyManager#getEnemiesNear(Vector3fc, float, java.util.Collection)
+ * @see BaseTargeterSystem
+ */
+public class TargetTracker {
+    private final List<EntityRef> candidates = new ArrayList<>();
+    private final List<EntityRef> result = new ArrayList<>();
+    private final Vector3f centre = new Vector3f();
+    private float minRange;
+    private float maxRange;
+    private long stamp = -1;
+    private long queryTime;
+
+    /**
+     * Gets all the enemies within a ring around a position, reusing the last query if possible.
+     * <p>
+     * The returned list is owned by the tracker, and is only valid until it's next called.
+     *
+     * @param enemyManager      The enemy manager to query
+     * @param pos               The centre of the ring
+     * @param minRange          The inner radius of the ring. Zero to include all enemies within the maximum range
+     * @param maxRange          The outer radius of the ring
+     * @param currentTime       The current game time. Given in ms
+     * @param reacquireInterval The longest time to reuse a query for. Given in ms
+     * @return The enemies within the ring
+     */
+    public List<EntityRef> getEnemiesInRange(EnemyManager enemyManager, Vector3fc pos, float minRange, float maxRange,
+                                             long currentTime, long reacquireInterval) {
+        long currentStamp = enemyManager.getRangeStamp(pos, maxRange);
+        if (currentStamp != stamp
+                || currentTime - queryTime >= reacquireInterval
+                || !centre.equals(pos)
+                || this.maxRange != maxRange) {
+            enemyManager.getEnemiesNear(pos, maxRange, candidates);
+            centre.set(pos);
+            this.maxRange = maxRange;
+            stamp = currentStamp;
+            queryTime = currentTime;
+        }
+        this.minRange = minRange;
+        filterCandidates(enemyManager.getEnemyStore());
+        return result;
+    }
+
+    /**
+     * Forgets the last query, so the next call will always query the enemy manager.
+     */
+    public void invalidate() {
+        stamp = -1;
+        candidates.clear();
+        result.clear();
+    }
+
+    /**
+     * Fills the result with the remembered enemies that are in the ring, and aren't already dying.
+     *
+     * @param store The store to read the enemy positions from
+     */
+    private void filterCandidates(EnemyStateStore store) {
+        float minRangeSqr = minRange > 0 ? minRange * minRange : -1;
+        float maxRangeSqr = maxRange * maxRange;
+        result.clear();
+        for (EntityRef enemy : candidates) {
+            int slot = store.getSlot(enemy);
+            if (slot >= 0 && !store.hasStatus(slot, EnemyStateStore.STATUS_DYING)) {
+                float distanceSqr = store.distanceSquared(slot, centre);
+                if (distanceSqr <= maxRangeSqr && distanceSqr > minRangeSqr) {
+                    result.add(enemy);
+                }
+            }
+        }
+    }
+}
@@ -170,7 +170,7 @@ public class TowerInfoScreen extends CoreScreenLayer {
             @Override
             public String get() {
                 return String.valueOf(
-                        TowerManager.getTotalCorePower(
+                        TowerManager.getCorePower(
                                 towerComponent));
             }
         });
@@ -178,8 +178,7 @@ public class TowerInfoScreen extends CoreScreenLayer {
             @Override
             public String get() {
                 return String.valueOf(
-                        TowerManager.getEffectorDrain(towerComponent) +
-                                TowerManager.getTargeterDrain(towerComponent));
+                        TowerManager.getDrain(towerComponent));
             }
         });
 
@@ -112,7 +112,7 @@ public class UIUpgrader extends CoreWidget {
         UpgradeInfo upgradeInfo = stages.get(0);
 
         if (currentUpgrade == upgradeInfo) {
-            upgradingSystem.applyUpgrade(getTargetComponent(), upgradeInfo);
+            upgradingSystem.applyUpgrade(entity.get(), getTargetComponent(), upgradeInfo);
             stages.remove(0);
             currentUpgrade = stages.isEmpty() ? null : stages.get(0);
         } else {
@@ -0,0 +1,28 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.gooeyDefence.upgrading;
+
+import org.terasology.gestalt.entitysystem.component.Component;
+import org.terasology.gestalt.entitysystem.event.Event;
+
+/**
+ * Event sent after an upgrade has been applied to a component.
+ * <p>
+ * Sent against the entity that was upgraded
+ *
+ * @see UpgradingSystem#applyUpgrade(org.terasology.engine.entitySystem.entity.EntityRef, Component, UpgradeInfo)
+ */
+public class OnUpgradeApplied implements Event {
+    private final Component component;
+
+    public OnUpgradeApplied(Component component) {
+        this.component = component;
+    }
+
+    /**
+     * @return The component that was upgraded
+     */
+    public Component getComponent() {
+        return component;
+    }
+}
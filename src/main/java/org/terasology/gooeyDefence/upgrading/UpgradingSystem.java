@@ -66,12 +66,15 @@ public class UpgradingSystem extends BaseComponentSystem {
 
     /**
      * Applies a given upgrade to the entity.
+     * Sends an event to the entity afterwards, so that any values derived from the component can be updated.
      *
+     * @param entity    The entity the component belongs to
      * @param component The component to apply the upgrade onto
      * @param upgrade   The upgrade to apply
      * @see UpgradeInfo
+     * @see OnUpgradeApplied
      */
-    public void applyUpgrade(Component component, UpgradeInfo upgrade) {
+    public void applyUpgrade(EntityRef entity, Component component, UpgradeInfo upgrade) {
         if (component == null || upgrade == null) {
             return;
         }
@@ -82,6 +85,7 @@ public class UpgradingSystem extends BaseComponentSystem {
             ComponentFieldMetadata<?, ?> fieldMeta = componentMeta.getField(entry.getKey());
             setField(fieldMeta, component, entry.getValue());
         }
+        entity.send(new OnUpgradeApplied(component));
     }
 
     /**
@@ -0,0 +1,143 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.gooeyDefence.visuals;
+
+import org.joml.Vector3fc;
+import org.terasology.engine.entitySystem.entity.EntityManager;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.logic.location.LocationComponent;
+import org.terasology.engine.particles.components.ParticleEmitterComponent;
+import org.terasology.gooeyDefence.DefenceUris;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Keeps a pool of bullet entities, so that they can be reused rather than created and destroyed for every shot.
+ * <p>
+ * Idle bullets are parked out of sight, without a movement component.
+ * Bullets created past the cap are destroyed when they are returned, rather than kept idle,
+ * so the pool shrinks back down to it's cap.
+ *
+ * @see InWorldRenderer
+ */
+public class BulletPool {
+    private final Deque<EntityRef> idleBullets = new ArrayDeque<>();
+    private final Vector3fc parkedPosition;
+    /**
+     * The number of bullets created by the pool that haven't been destroyed, both idle and in flight.
+     */
+    private int liveCount;
+
+    /**
+     * @param parkedPosition Where to place idle bullets
+     */
+    public BulletPool(Vector3fc parkedPosition) {
+        this.parkedPosition = parkedPosition;
+    }
+
+    /**
+     * Creates idle bullets until the pool holds the given number, or reaches it's cap.
+     *
+     * @param entityManager The entity manager to create the bullets with
+     * @param count         The number of idle bullets to have ready
+     * @param cap           The most bullets the pool can have in total
+     */
+    public void prewarm(EntityManager entityManager, int count, int cap) {
+        while (idleBullets.size() < count && liveCount < cap) {
+            EntityRef bullet = entityManager.create(DefenceUris.BULLET);
+            liveCount++;
+            release(bullet, cap);
+        }
+    }
+
+    /**
+     * Takes a bullet from the pool, creating a new one if none are idle and the cap hasn't been reached.
+     * <p>
+     * Idle bullets that have been destroyed elsewhere are dropped from the pool.
+     * Reused bullets have their particle emitter restarted, as it will have run out while the bullet was idle.
+     *
+     * @param entityManager The entity manager to create the bullet with
+     * @param cap           The most bullets the pool can have in total
+     * @param ignoreCap     True if a bullet should be created even if the cap has been reached
+     * @return The bullet, or {@link EntityRef#NULL} if the cap has been reached
+     */
+    public EntityRef acquire(EntityManager entityManager, int cap, boolean ignoreCap) {
+        while (!idleBullets.isEmpty()) {
+            EntityRef bullet = idleBullets.pop();
+            if (bullet.exists()) {
+                resetEmitter(bullet);
+                return bullet;
+            }
+            liveCount--;
+        }
+        if (liveCount < cap || ignoreCap) {
+            liveCount++;
+            return entityManager.create(DefenceUris.BULLET);
+        }
+        return EntityRef.NULL;
+    }
+
+    /**
+     * Returns a bullet to the pool, parking it out of sight.
+     * The bullet should no longer have a movement component.
+     * <p>
+     * If the pool is over it's cap the bullet is destroyed instead.
+     *
+     * @param bullet The bullet to return
+     * @param cap    The most bullets the pool can have in total
+     */
+    public void release(EntityRef bullet, int cap) {
+        if (!bullet.exists()) {
+            liveCount--;
+            return;
+        }
+        if (liveCount > cap) {
+            liveCount--;
+            bullet.destroy();
+            return;
+        }
+        LocationComponent locationComponent = bullet.getComponent(LocationComponent.class);
+        if (locationComponent != null) {
+            locationComponent.setWorldPosition(parkedPosition);
+        }
+        idleBullets.push(bullet);
+    }
+
+    /**
+     * Restarts the particle emitter of a bullet, using the emitter in it's prefab.
+     * The emitter is added back if it was removed when it ran out.
+     *
+     * @param bullet The bullet to restart the emitter of
+     */
+    private void resetEmitter(EntityRef bullet) {
+        if (bullet.getParentPrefab() == null) {
+            return;
+        }
+        ParticleEmitterComponent prefabEmitter = bullet.getParentPrefab().getComponent(ParticleEmitterComponent.class);
+        if (prefabEmitter == null) {
+            return;
+        }
+        ParticleEmitterComponent emitter = bullet.getComponent(ParticleEmitterComponent.class);
+        if (emitter == null) {
+            emitter = new ParticleEmitterComponent();
+            emitter.copyFrom(prefabEmitter);
+            bullet.addComponent(emitter);
+        } else {
+            emitter.lifeTime = prefabEmitter.lifeTime;
+            bullet.saveComponent(emitter);
+        }
+    }
+
+    /**
+     * Destroys all the idle bullets.
+     * Bullets in flight are still counted until they are returned.
+     */
+    public void clear() {
+        for (EntityRef bullet : idleBullets) {
+            bullet.destroy();
+        }
+        liveCount -= idleBullets.size();
+        idleBullets.clear();
+    }
+}
@@ -19,7 +19,6 @@ import org.terasology.engine.logic.players.PlayerTargetChangedEvent;
 import org.terasology.engine.particles.components.generators.VelocityRangeGeneratorComponent;
 import org.terasology.engine.registry.In;
 import org.terasology.engine.registry.Share;
-import org.terasology.engine.rendering.logic.MeshComponent;
 import org.terasology.engine.rendering.world.selection.BlockSelectionRenderer;
 import org.terasology.engine.utilities.Assets;
 import org.terasology.gestalt.entitysystem.component.Component;
@@ -28,6 +27,8 @@ import org.terasology.gooeyDefence.DefenceField;
 import org.terasology.gooeyDefence.DefenceUris;
 import org.terasology.gooeyDefence.components.ShrineComponent;
 import org.terasology.gooeyDefence.events.OnEntrancePathCalculated;
+import org.terasology.gooeyDefence.events.OnFieldActivated;
+import org.terasology.gooeyDefence.events.OnFieldReset;
 import org.terasology.gooeyDefence.health.events.DamageEntityEvent;
 import org.terasology.gooeyDefence.health.events.EntityDeathEvent;
 import org.terasology.gooeyDefence.movement.PathfindingManager;
@@ -39,7 +40,9 @@ import org.terasology.gooeyDefence.visuals.components.PathBlockComponent;
 import org.terasology.gooeyDefence.visuals.components.SplashBulletComponent;
 import org.terasology.gooeyDefence.visuals.components.TargeterBulletComponent;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +51,11 @@ import java.util.Map;
  * These involve rendering stuff in world for systems that provide functionality.
  * <p>
  * Also handles application and removal of particle effects and shot entities.
+ * <p>
+ * Bullet entities are taken from a {@link BulletPool} and returned to it when they land.
+ * Once the pool reaches {@link DefenceField#bulletPoolCap}, plain bullets are instead drawn as tracers,
+ * which are only a position moved each tick and drawn as an overlay. Splash bullets always use an entity, as the
+ * splash is resolved when the entity lands.
  */
 @RegisterSystem
 @Share(InWorldRenderer.class)
@@ -58,9 +66,26 @@ public class InWorldRenderer extends BaseComponentSystem implements RenderSystem
      * This position is below ground
      */
     private static final Vector3fc OUT_OF_SIGHT = new Vector3f(0, -3, 0);
+    /**
+     * How fast bullets and tracers fly, in blocks per second.
+     */
+    private static final float BULLET_SPEED = 30;
+    /**
+     * How close a bullet or tracer must be to it's goal to have reached it.
+     * Given as the square of the distance, in blocks.
+     */
+    private static final float BULLET_REACHED_DISTANCE = 0.5f;
     private final Map<EntityRef, SphereInfo> expandingSpheres = new HashMap<>();
     private final Map<EntityRef, EntityRef> bullets = new HashMap<>();
+    private final BulletPool bulletPool = new BulletPool(OUT_OF_SIGHT);
+    /**
+     * Bullets that landed this tick, to be returned to the pool once every system has handled the landing.
+     */
+    private final List<EntityRef> landedBullets = new ArrayList<>();
+    private final List<TracerInfo> tracers = new ArrayList<>();
+    private final Vector3i tracerBlock = new Vector3i();
     private BlockSelectionRenderer shrineDamageRenderer;
+    private BlockSelectionRenderer tracerRenderer;
     @In
     private Time time;
     @In
@@ -79,6 +104,7 @@ public class InWorldRenderer extends BaseComponentSystem implements RenderSystem
         /* Cast is needed to subscribe */
 
         shrineDamageRenderer = new BlockSelectionRenderer(Assets.getTexture(DefenceUris.SHRINE_DAMAGED).get());
+        tracerRenderer = new BlockSelectionRenderer(Assets.getTexture(DefenceUris.BULLET_PARTICLE).get());
         rangeSphere = entityManager.create(DefenceUris.SPHERE);
         LocationComponent sphereLoc = rangeSphere.getComponent(LocationComponent.class);
 
@@ -100,6 +126,32 @@ public class InWorldRenderer extends BaseComponentSystem implements RenderSystem
         shrineDamaged = 100;
     }
 
+    /**
+     * Fills the bullet pool, so that the first shots of the game don't have to create entities.
+     *
+     * @see OnFieldActivated
+     */
+    @ReceiveEvent
+    public void onFieldActivated(OnFieldActivated event, EntityRef entity) {
+        bulletPool.prewarm(entityManager, DefenceField.bulletPoolPrewarm, DefenceField.bulletPoolCap);
+    }
+
+    /**
+     * Removes all the tracers and bullets when the field is reset.
+     *
+     * @see OnFieldReset
+     */
+    @ReceiveEvent
+    public void onFieldReset(OnFieldReset event, EntityRef entity) {
+        tracers.clear();
+        clearBullets();
+    }
+
+    @Override
+    public void shutdown() {
+        clearBullets();
+    }
+
     /**
      * Called whenever an entrance path is changed.
      * Used to re-create the path display entities.
@@ -172,6 +224,18 @@ public class InWorldRenderer extends BaseComponentSystem implements RenderSystem
             }
         }
         shrineDamageRenderer.endRenderOverlay();
+
+        if (!tracers.isEmpty()) {
+            tracerRenderer.beginRenderOverlay();
+            for (TracerInfo tracer : tracers) {
+                tracerBlock.set(
+                        (int) Math.floor(tracer.position.x),
+                        (int) Math.floor(tracer.position.y),
+                        (int) Math.floor(tracer.position.z));
+                tracerRenderer.renderMark2(tracerBlock);
+            }
+            tracerRenderer.endRenderOverlay();
+        }
     }
 
     /**
@@ -187,17 +251,26 @@ public class InWorldRenderer extends BaseComponentSystem implements RenderSystem
      * If the goal is destroyed, then it will home in on the last position of it before it was destroyed.
      * <p>
      * When the target is reached an {@link ReachedGoalEvent} will be sent against the bullet.
+     * <p>
+     * If the bullet pool is full, a tracer is shown instead and no event is sent.
+     * Bullets flagged with a {@link SplashBulletComponent} are always given an entity.
      *
      * @param goal      The entity to target
      * @param start     The starting position of the bullet
      * @param component An optional component to add as a flag.
      */
     public void shootBulletTowards(EntityRef goal, Vector3f start, Component component) {
-        EntityRef bullet = entityManager.create(DefenceUris.BULLET);
+        Vector3f goalPosition = goal.getComponent(LocationComponent.class).getWorldPosition(new Vector3f());
+        boolean isSplash = component instanceof SplashBulletComponent;
+        EntityRef bullet = bulletPool.acquire(entityManager, DefenceField.bulletPoolCap, isSplash);
+        if (!bullet.exists()) {
+            tracers.add(new TracerInfo(goal, start, goalPosition));
+            return;
+        }
         MovementComponent movementComponent = new MovementComponent();
-        movementComponent.goal = goal.getComponent(LocationComponent.class).getWorldPosition(new Vector3f());
-        movementComponent.speed = (float) 30;
-        movementComponent.reachedDistance = 0.5f;
+        movementComponent.goal = goalPosition;
+        movementComponent.speed = BULLET_SPEED;
+        movementComponent.reachedDistance = BULLET_REACHED_DISTANCE;
         bullet.addOrSaveComponent(movementComponent);
 
         LocationComponent locationComponent = bullet.getComponent(LocationComponent.class);
@@ -230,30 +303,97 @@ public class InWorldRenderer extends BaseComponentSystem implements RenderSystem
     @Override
     public void update(float delta) {
         updateSpheres(delta);
+        recycleLandedBullets();
         updateBullets();
+        updateTracers(delta);
     }
 
     /**
      * Update all the bullets.
      * Sets their {@link MovementComponent}'s goal to the target's position.
+     * <p>
+     * Bullets whose target has been destroyed are returned to the pool, except for splash bullets which carry on to
+     * the last position of the target, as the splash is only resolved when they land.
      */
     private void updateBullets() {
-        bullets.keySet().forEach(bullet -> {
-            if (!bullets.get(bullet).exists()) {
-                bullet.destroy();
+        Iterator<Map.Entry<EntityRef, EntityRef>> iterator = bullets.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<EntityRef, EntityRef> entry = iterator.next();
+            EntityRef bullet = entry.getKey();
+            EntityRef goal = entry.getValue();
+            if (!bullet.exists()) {
+                iterator.remove();
+                bulletPool.release(bullet, DefenceField.bulletPoolCap);
+            } else if (!bullet.hasComponent(MovementComponent.class)) {
+                /* Landed, and so already queued to be recycled */
+                iterator.remove();
+            } else if (!goal.exists() || !goal.hasComponent(LocationComponent.class)) {
+                iterator.remove();
+                if (!bullet.hasComponent(SplashBulletComponent.class)) {
+                    recycleBullet(bullet);
+                }
+            } else {
+                MovementComponent component = bullet.getComponent(MovementComponent.class);
+                goal.getComponent(LocationComponent.class).getWorldPosition(component.goal);
             }
-        });
-        bullets.keySet().removeIf(entityRef ->
-                !entityRef.hasComponent(MovementComponent.class)
-                        || !entityRef.exists());
-        bullets.values().removeIf(entityRef ->
-                !entityRef.hasComponent(LocationComponent.class)
-                        || !entityRef.exists());
+        }
+    }
 
+    /**
+     * Returns every bullet in flight to the pool, and then destroys all the pooled bullets.
+     */
+    private void clearBullets() {
+        recycleLandedBullets();
         for (EntityRef bullet : bullets.keySet()) {
-            MovementComponent component = bullet.getComponent(MovementComponent.class);
-            EntityRef goal = bullets.get(bullet);
-            component.goal = goal.getComponent(LocationComponent.class).getWorldPosition(new Vector3f());
+            recycleBullet(bullet);
+        }
+        bullets.clear();
+        bulletPool.clear();
+    }
+
+    /**
+     * Returns all the bullets that landed since the last update to the pool.
+     */
+    private void recycleLandedBullets() {
+        for (EntityRef bullet : landedBullets) {
+            recycleBullet(bullet);
+        }
+        landedBullets.clear();
+    }
+
+    /**
+     * Strips a bullet of it's flight and flag components, and returns it to the pool.
+     *
+     * @param bullet The bullet to recycle
+     */
+    private void recycleBullet(EntityRef bullet) {
+        if (bullet.exists()) {
+            bullet.removeComponent(MovementComponent.class);
+            bullet.removeComponent(SplashBulletComponent.class);
+        }
+        bulletPool.release(bullet, DefenceField.bulletPoolCap);
+    }
+
+    /**
+     * Moves all the tracers towards their goals, removing the ones that have arrived.
+     * Tracers follow their goal until it is destroyed, then carry on to it's last position.
+     *
+     * @param delta The time the last frame took.
+     */
+    private void updateTracers(float delta) {
+        Iterator<TracerInfo> iterator = tracers.iterator();
+        while (iterator.hasNext()) {
+            TracerInfo tracer = iterator.next();
+            if (tracer.goal.exists() && tracer.goal.hasComponent(LocationComponent.class)) {
+                tracer.goal.getComponent(LocationComponent.class).getWorldPosition(tracer.goalPosition);
+            }
+            float distanceSqr = tracer.position.distanceSquared(tracer.goalPosition);
+            float step = BULLET_SPEED * delta;
+            if (distanceSqr < BULLET_REACHED_DISTANCE || step * step >= distanceSqr) {
+                iterator.remove();
+            } else {
+                tracer.position.lerp(tracer.goalPosition, step / (float) Math.sqrt(distanceSqr));
+            }
         }
     }
 
@@ -280,13 +420,16 @@ public class InWorldRenderer extends BaseComponentSystem implements RenderSystem
     }
 
     /**
+     * Called when a bullet reaches it's goal.
+     * Queues the bullet to be returned to the pool at the next update, once the landing has been handled.
+     * <p>
      * Filters on {@link TargeterBulletComponent}
      *
      * @see ReachedGoalEvent
      */
     @ReceiveEvent(components = TargeterBulletComponent.class)
     public void onReachedGoal(ReachedGoalEvent event, EntityRef entity) {
-        entity.removeComponent(MeshComponent.class);
+        landedBullets.add(entity);
     }
 
     /**
@@ -422,6 +565,30 @@ public class InWorldRenderer extends BaseComponentSystem implements RenderSystem
     public void renderShadows() {
     }
 
+    /**
+     * Class to provide a container for the values associated with each tracer
+     */
+    private static class TracerInfo {
+        /**
+         * The entity the tracer is flying towards
+         */
+        private final EntityRef goal;
+        /**
+         * Where the tracer currently is
+         */
+        private final Vector3f position;
+        /**
+         * The last known position of the goal
+         */
+        private final Vector3f goalPosition;
+
+        private TracerInfo(EntityRef goal, Vector3fc start, Vector3fc goalPosition) {
+            this.goal = goal;
+            this.position = new Vector3f(start);
+            this.goalPosition = new Vector3f(goalPosition);
+        }
+    }
+
     /**
      * Class to provide a container for the values associated with each expanding rangeSphere
      */
@@ -2,14 +2,21 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.gooeyDefence.visuals.components;
 
+import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.gestalt.entitysystem.component.Component;
 
 /**
  * Used to flag bullets as having a splash effect on them.
- * This will cause them to produce an expanding sphere effect when they reach their goal
+ * This will cause them to produce an expanding sphere effect when they reach their goal.
+ * <p>
+ * The enemies hit by the splash are found when the bullet lands, and attacked by the targeter that fired it.
  */
 public class SplashBulletComponent implements Component<SplashBulletComponent> {
     public float splashRange = 1f;
+    /**
+     * The targeter that fired the bullet.
+     */
+    public EntityRef targeter = EntityRef.NULL;
 
     /**
      * Required for serialisation.
@@ -22,9 +29,15 @@ public class SplashBulletComponent implements Component<SplashBulletComponent> {
         this.splashRange = splashRange;
     }
 
+    public SplashBulletComponent(float splashRange, EntityRef targeter) {
+        this.splashRange = splashRange;
+        this.targeter = targeter;
+    }
+
 
     @Override
     public void copyFrom(SplashBulletComponent other) {
         this.splashRange = other.splashRange;
+        this.targeter = other.targeter;
     }
 }